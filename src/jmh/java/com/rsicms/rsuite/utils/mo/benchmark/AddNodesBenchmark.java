@@ -0,0 +1,95 @@
+package com.rsicms.rsuite.utils.mo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.xml.XPathEvaluator;
+import com.reallysi.rsuite.service.ManagedObjectService;
+import com.rsicms.rsuite.utils.mo.MOUtils;
+import com.rsicms.rsuite.utils.mo.fakes.InMemoryRepository;
+
+/**
+ * Benchmarks {@link MOUtils#addNodesIntoExistingMo}. The method mutates the target MO and adopts
+ * the nodes it is given, so both are rebuilt before each invocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddNodesBenchmark {
+
+  /**
+   * Approximate number of characters within the target MO.
+   */
+  @Param({"4096", "262144"})
+  public int documentSize;
+
+  /**
+   * Number of nodes to insert.
+   */
+  @Param({"1", "50"})
+  public int newNodeCount;
+
+  private MOUtils moUtils;
+  private InMemoryRepository repository;
+  private ManagedObjectService moService;
+  private XPathEvaluator eval;
+  private User user;
+  private String moId;
+  private List<Node> newNodes;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    moUtils = new MOUtils();
+    repository = new InMemoryRepository();
+    moService = repository.getManagedObjectService();
+    eval = repository.getXPathEvaluator();
+    user = repository.getUser("bench");
+    moId = repository.addBook(0, 0);
+    repository.checkOut(moId, user);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    Document doc = InMemoryRepository.newDocument();
+    Element book = doc.createElement("book");
+    doc.appendChild(book);
+    InMemoryRepository.fill(doc, book, documentSize);
+    repository.setElement(moId, book);
+
+    Document source = InMemoryRepository.newDocument();
+    newNodes = new ArrayList<Node>(newNodeCount);
+    for (int i = 0; i < newNodeCount; i++) {
+      Element para = source.createElement("p");
+      para.appendChild(source.createTextNode("Inserted paragraph " + i));
+      newNodes.add(para);
+    }
+  }
+
+  @Benchmark
+  public void addNodesIntoExistingMo() throws Exception {
+    moUtils.addNodesIntoExistingMo(moService, user, moId, "/book/p[1]", false, eval, newNodes,
+        false, null);
+  }
+
+}
@@ -0,0 +1,12 @@
+package com.rsicms.rsuite.utils.mo.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * The {@link RoundTripBenchmark} operations performed by 100 concurrent users, each working on
+ * their own MO within the same simulated repository.
+ */
+@Threads(100)
+public class ConcurrentUsersBenchmark extends RoundTripBenchmark {
+
+}
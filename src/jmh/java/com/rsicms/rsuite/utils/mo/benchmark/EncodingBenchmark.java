@@ -0,0 +1,123 @@
+package com.rsicms.rsuite.utils.mo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rsicms.rsuite.utils.mo.io.EncodingUtils;
+
+/**
+ * Compares the conversions MOUtils used to make with the pooled {@link EncodingUtils} versions it
+ * now uses. Run with the GC profiler (as the <code>jmh</code> Gradle task does) and compare
+ * <code>gc.alloc.rate.norm</code>, the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+
+  private static final String ENCODING = "UTF-8";
+
+  /**
+   * Number of characters to convert.
+   */
+  @Param({"1024", "65536", "1048576"})
+  public int size;
+
+  private String content;
+  private byte[] contentBytes;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    // Mostly ASCII, with the occasional multi-byte character.
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder(size);
+    for (int i = 0; i < size; i++) {
+      sb.append(random.nextInt(100) == 0 ? (char) (0x00C0 + random.nextInt(64))
+          : (char) ('a' + random.nextInt(26)));
+    }
+    content = sb.toString();
+    contentBytes = content.getBytes(ENCODING);
+  }
+
+  /**
+   * Make sure the pooled conversions produce the same bytes as the ones they replace, including
+   * for the platform's default encoding, multi-byte and unmappable characters, empty input and
+   * content spanning several pooled buffers.
+   */
+  @Setup(Level.Trial)
+  public void verify() throws IOException {
+    StringBuilder large = new StringBuilder();
+    while (large.length() < 3 * EncodingUtils.BUFFER_SIZE) {
+      large.append("abc \u00e9\u4e2d\ud83d\ude00 ");
+    }
+    String[] contents = {"", "plain ASCII", "multi-byte \u00e9\u00fc\u4e2d\ud83d\ude00",
+        "lone \ud800 surrogate", large.toString(), content};
+    String[] encodings = {null, ENCODING, "ISO-8859-1", "US-ASCII", "UTF-16"};
+    for (String str : contents) {
+      for (String encoding : encodings) {
+        String label = "encoding " + encoding + " of " + str.length() + " characters";
+        byte[] pooled = EncodingUtils.toByteArray(str, encoding);
+        verify(label + " via reader",
+            IOUtils.toByteArray(new StringReader(str), encoding), pooled);
+        verify(label + " via getBytes",
+            encoding == null ? str.getBytes() : str.getBytes(encoding), pooled);
+        verify(label + " as a stream", pooled,
+            EncodingUtils.toByteArray(new ByteArrayInputStream(pooled)));
+      }
+    }
+  }
+
+  private void verify(String label, byte[] expected, byte[] actual) {
+    if (!Arrays.equals(expected, actual)) {
+      throw new IllegalStateException("Pooled conversion differs for " + label + ": expected "
+          + expected.length + " bytes, got " + actual.length + ".");
+    }
+  }
+
+  @Benchmark
+  public byte[] stringViaReader() throws IOException {
+    return IOUtils.toByteArray(new StringReader(content), ENCODING);
+  }
+
+  @Benchmark
+  public byte[] stringViaGetBytes() throws IOException {
+    return content.getBytes(ENCODING);
+  }
+
+  @Benchmark
+  public byte[] stringPooled() throws IOException {
+    return EncodingUtils.toByteArray(content, ENCODING);
+  }
+
+  @Benchmark
+  public byte[] streamViaIOUtils() throws IOException {
+    return IOUtils.toByteArray(new ByteArrayInputStream(contentBytes));
+  }
+
+  @Benchmark
+  public byte[] streamPooled() throws IOException {
+    return EncodingUtils.toByteArray(new ByteArrayInputStream(contentBytes));
+  }
+
+}
@@ -0,0 +1,162 @@
+package com.rsicms.rsuite.utils.mo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.control.ObjectSource;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.reallysi.rsuite.service.ManagedObjectService;
+import com.rsicms.rsuite.utils.mo.MOUtils;
+import com.rsicms.rsuite.utils.mo.fakes.InMemoryRepository;
+import com.rsicms.rsuite.utils.mo.qualifiers.QNameManagedObjectQualifier;
+
+/**
+ * Benchmarks MOUtils' hot paths against an in-memory repository. Run via the <code>jmh</code>
+ * Gradle task, which enables the GC profiler so allocation rates are reported with throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MOUtilsBenchmark {
+
+  private static final String ENCODING = "UTF-8";
+
+  /**
+   * Number of sub-MOs within the top-level MO.
+   */
+  @Param({"10", "100", "1000"})
+  public int childCount;
+
+  /**
+   * Approximate number of characters within each sub-MO.
+   */
+  @Param({"256", "4096"})
+  public int childSize;
+
+  private MOUtils moUtils;
+  private InMemoryRepository repository;
+  private ManagedObjectService moService;
+  private ExecutionContext context;
+  private User user;
+  private ManagedObject rootMo;
+  private ManagedObject middleSubMo;
+  private QName matchingQName;
+  private QNameManagedObjectQualifier qualifier;
+  private Transformer transformer;
+  private String content;
+  private byte[] contentBytes;
+  private File contentFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    moUtils = new MOUtils();
+    repository = new InMemoryRepository();
+    moService = repository.getManagedObjectService();
+    context = repository.getExecutionContext();
+    user = repository.getUser("bench");
+    String rootId = repository.addBook(childCount, childSize);
+    rootMo = repository.getManagedObject(rootId);
+    middleSubMo = (ManagedObject) rootMo.listDescendantManagedObjects().get(childCount / 2);
+    matchingQName = new QName("book");
+    qualifier = new QNameManagedObjectQualifier(matchingQName);
+    transformer = TransformerFactory.newInstance().newTransformer();
+
+    InputStream is = moUtils.getInputStream(transformer, rootMo, true, false, ENCODING);
+    contentBytes = IOUtils.toByteArray(is);
+    content = new String(contentBytes, ENCODING);
+    contentFile = File.createTempFile("mo-utils-bench", ".xml");
+    FileOutputStream fos = new FileOutputStream(contentFile);
+    try {
+      fos.write(contentBytes);
+    } finally {
+      IOUtils.closeQuietly(fos);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (contentFile != null) {
+      contentFile.delete();
+    }
+  }
+
+  @Benchmark
+  public InputStream getInputStream() throws Exception {
+    return moUtils.getInputStream(transformer, rootMo, true, false, ENCODING);
+  }
+
+  @Benchmark
+  public ObjectSource getObjectSourceFromFile() throws IOException {
+    return moUtils.getObjectSource(context, "file.xml", contentFile, ENCODING);
+  }
+
+  @Benchmark
+  public ObjectSource getObjectSourceFromInputStream() throws IOException {
+    return moUtils.getObjectSource(context, "file.xml", new ByteArrayInputStream(contentBytes),
+        ENCODING);
+  }
+
+  @Benchmark
+  public ObjectSource getObjectSourceFromString() throws IOException {
+    return moUtils.getObjectSource(context, "file.xml", content, ENCODING);
+  }
+
+  @Benchmark
+  public ObjectSource getObjectSourceFromBytes() throws IOException {
+    return moUtils.getObjectSource(context, "file.xml", contentBytes, ENCODING);
+  }
+
+  @Benchmark
+  public boolean hasMatchingQName() throws Exception {
+    return moUtils.hasMatchingQName(rootMo, matchingQName);
+  }
+
+  @Benchmark
+  public boolean qnameQualifierAccept() throws Exception {
+    return qualifier.accept(rootMo);
+  }
+
+  @Benchmark
+  public ManagedObject getFollowingSubMo() throws Exception {
+    return moUtils.getFollowingSubMo(moService, user, middleSubMo);
+  }
+
+  @Benchmark
+  public ManagedObject getPrecedingSubMo() throws Exception {
+    return moUtils.getPrecedingSubMo(moService, user, middleSubMo);
+  }
+
+  @Benchmark
+  public boolean isCheckedOutWithSubMos() throws Exception {
+    return moUtils.isCheckedOut(moService, user, rootMo.getId(), true);
+  }
+
+}
@@ -0,0 +1,317 @@
+package com.rsicms.rsuite.utils.mo.benchmark;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.Session;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.reallysi.rsuite.service.ManagedObjectService;
+import com.rsicms.rsuite.utils.mo.MOUtils;
+import com.rsicms.rsuite.utils.mo.fakes.InMemoryRepository;
+import com.rsicms.rsuite.utils.mo.fakes.LatencyModel;
+
+/**
+ * Measures how many repository round trips MOUtils' repository-bound operations make, against an
+ * in-memory repository with simulated latency. The round trips per operation are reported as the
+ * <code>roundTrips</code> secondary result; an operation exceeding its budget fails the run.
+ * <p>
+ * See {@link ConcurrentUsersBenchmark} for the same operations under 100 concurrent users.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+  /**
+   * Number of metadata entries deleted by each {@link #deleteMetadataEntries} invocation.
+   */
+  private static final int METADATA_ENTRY_COUNT = 5;
+
+  private static final String LMD_NAME = "status";
+
+  /**
+   * Every how manyth sub-MO {@link #CHANGE_XSL} changes.
+   */
+  private static final int CHANGE_INTERVAL = 10;
+
+  private static final URI CHANGE_XSL_URI = URI.create("change.xsl");
+
+  /**
+   * Increments the <code>rev</code> attribute of every {@link #CHANGE_INTERVAL}th chapter, leaving
+   * the others as they are.
+   */
+  private static final String CHANGE_XSL =
+      "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+          + "<xsl:template match='@*|node()'>"
+          + "<xsl:copy><xsl:apply-templates select='@*|node()'/></xsl:copy>"
+          + "</xsl:template>"
+          + "<xsl:template match='chapter[@n mod " + CHANGE_INTERVAL + " = 0]'>"
+          + "<xsl:copy><xsl:apply-templates select='@*'/>"
+          + "<xsl:attribute name='rev'><xsl:value-of select='sum(@rev) + 1'/></xsl:attribute>"
+          + "<xsl:apply-templates select='node()'/></xsl:copy>"
+          + "</xsl:template>"
+          + "</xsl:stylesheet>";
+
+  /**
+   * Per-round-trip latency, as understood by {@link LatencyModel#parse(String)}.
+   */
+  @Param({"0", "2000+1000"})
+  public String latency;
+
+  /**
+   * Number of sub-MOs within each user's top-level MO.
+   */
+  @Param({"100"})
+  public int childCount;
+
+  private final AtomicInteger userCount = new AtomicInteger();
+  private InMemoryRepository repository;
+  private ExecutorService transformPool;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    repository = new InMemoryRepository();
+    repository.setLatency(LatencyModel.parse(latency));
+    repository.addTransform(CHANGE_XSL_URI, CHANGE_XSL);
+    transformPool = Executors.newFixedThreadPool(8);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    transformPool.shutdownNow();
+  }
+
+  /**
+   * Runs a user's transforms on the shared pool, counting the round trips they make. Round trips
+   * are otherwise only attributed to the thread making them.
+   */
+  private static class CountingExecutor extends AbstractExecutorService {
+    private final ExecutorService pool;
+    private final InMemoryRepository repository;
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    private CountingExecutor(ExecutorService pool, InMemoryRepository repository) {
+      this.pool = pool;
+      this.repository = repository;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
+      // Count within the task, so the count is in before its result is.
+      return super.newTaskFor(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          long start = repository.getThreadCallCount();
+          try {
+            return callable.call();
+          } finally {
+            roundTrips.addAndGet(repository.getThreadCallCount() - start);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      pool.execute(command);
+    }
+
+    @Override
+    public void shutdown() {
+      throw new UnsupportedOperationException("The pool is shut down with the benchmark.");
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      throw new UnsupportedOperationException("The pool is shut down with the benchmark.");
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return pool.awaitTermination(timeout, unit);
+    }
+  }
+
+  /**
+   * Each benchmark thread acts as a different user working on their own MO.
+   */
+  @State(Scope.Thread)
+  public static class UserState {
+    private MOUtils moUtils;
+    private InMemoryRepository repository;
+    private ManagedObjectService moService;
+    private ExecutionContext context;
+    private User user;
+    private Session session;
+    private ManagedObject rootMo;
+    private ManagedObject middleSubMo;
+    private int siblingBudget;
+    private CountingExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp(RoundTripBenchmark benchmark) throws Exception {
+      moUtils = new MOUtils();
+      repository = benchmark.repository;
+      moService = repository.getManagedObjectService();
+      context = repository.getExecutionContext();
+      user = repository.getUser("user" + benchmark.userCount.incrementAndGet());
+      session = repository.getSession(user);
+      rootMo = repository.getManagedObject(repository.addBook(benchmark.childCount, 256));
+      middleSubMo =
+          (ManagedObject) rootMo.listDescendantManagedObjects().get(benchmark.childCount / 2);
+
+      // One call to qualify the MO, another for its root, then at most one call per page of at
+      // least 20 sub-MOs.
+      int pages = (benchmark.childCount / 2 + 2 + 19) / 20;
+      siblingBudget = 2 + pages;
+
+      executor = new CountingExecutor(benchmark.transformPool, repository);
+    }
+  }
+
+  /**
+   * Restores the metadata {@link RoundTripBenchmark#deleteMetadataEntries} deletes.
+   */
+  @State(Scope.Thread)
+  public static class MetadataState {
+
+    @Setup(Level.Invocation)
+    public void addMetadata(UserState state) {
+      for (int i = 0; i < METADATA_ENTRY_COUNT; i++) {
+        state.repository.addMetadata(state.rootMo.getId(), LMD_NAME, String.valueOf(i));
+      }
+    }
+  }
+
+  /**
+   * Round trips made by the measured operations.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class RoundTrips {
+    public long roundTrips;
+
+    private long start;
+
+    private void begin(InMemoryRepository repository) {
+      start = repository.getThreadCallCount();
+    }
+
+    private void end(InMemoryRepository repository, String operation, long budget) {
+      end(repository, operation, budget, 0);
+    }
+
+    /**
+     * @param otherThreadTrips Round trips the operation made on other threads.
+     */
+    private void end(InMemoryRepository repository, String operation, long budget,
+        long otherThreadTrips) {
+      long made = repository.getThreadCallCount() - start + otherThreadTrips;
+      roundTrips += made;
+      if (made > budget) {
+        throw new IllegalStateException(operation + " made " + made
+            + " repository round trips; its budget is " + budget + ".");
+      }
+    }
+  }
+
+  @Benchmark
+  public ManagedObject getSiblingSubMo(UserState state, RoundTrips trips) throws Exception {
+    trips.begin(state.repository);
+    ManagedObject sibling =
+        state.moUtils.getFollowingSubMo(state.moService, state.user, state.middleSubMo);
+    trips.end(state.repository, "getSiblingSubMo", state.siblingBudget);
+    return sibling;
+  }
+
+  @Benchmark
+  public boolean checkout(UserState state, RoundTrips trips) throws Exception {
+    trips.begin(state.repository);
+    boolean checkedOut = state.moUtils.checkout(state.context, state.user, state.rootMo.getId());
+    // One call to see whether it is checked out and another to check it out.
+    trips.end(state.repository, "checkout", 2);
+    state.moService.undoCheckout(state.user, state.rootMo.getId());
+    return checkedOut;
+  }
+
+  @Benchmark
+  public void deleteMetadataEntries(UserState state, MetadataState metadata, RoundTrips trips)
+      throws Exception {
+    trips.begin(state.repository);
+    state.moUtils.deleteMetadataEntries(state.user, state.moService, state.rootMo.getId(),
+        LMD_NAME);
+    // Get the MO and its metadata, then one call per entry deleted.
+    trips.end(state.repository, "deleteMetadataEntries", 2 + METADATA_ENTRY_COUNT);
+  }
+
+  @Benchmark
+  public void applyTransformAndUpdate(UserState state, RoundTrips trips) throws Exception {
+    trips.begin(state.repository);
+    state.moUtils.applyTransformAndUpdate(state.context, state.session, state.rootMo,
+        URI.create("identity.xsl"), null, false, null, "UTF-8", "Round trip benchmark");
+    // Check out (2), get the MO's content, update, check in, and confirm the check out is gone.
+    trips.end(state.repository, "applyTransformAndUpdate", 6);
+  }
+
+  @Benchmark
+  public int applyTransformAndUpdateInParallel(RoundTripBenchmark benchmark, UserState state,
+      RoundTrips trips) throws Exception {
+    trips.begin(state.repository);
+    long transformTripsStart = state.executor.roundTrips.get();
+    int updated = state.moUtils.applyTransformAndUpdate(state.context, state.session, state.rootMo,
+        CHANGE_XSL_URI, null, false, null, "UTF-8", "Round trip benchmark", state.executor);
+    int changed = (benchmark.childCount + CHANGE_INTERVAL - 1) / CHANGE_INTERVAL;
+    if (updated != changed) {
+      throw new IllegalStateException("applyTransformAndUpdateInParallel updated " + updated
+          + " sub-MOs; " + changed + " were changed.");
+    }
+    // Check out (2) and list the sub-MOs; get each sub-MO's content to transform and again to
+    // compare with the result; update each changed sub-MO; then check in the MO once and confirm
+    // the check out is gone.
+    trips.end(state.repository, "applyTransformAndUpdateInParallel",
+        3 + 2 * benchmark.childCount + changed + 2,
+        state.executor.roundTrips.get() - transformTripsStart);
+    return updated;
+  }
+
+}
@@ -0,0 +1,181 @@
+package com.rsicms.rsuite.utils.mo.fakes;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds lightweight fakes of RSuite API interfaces. Only the methods given an answer do anything;
+ * every other method returns its type's default value. This keeps the fakes independent of the
+ * (large) remainder of each RSuite interface.
+ */
+public class Fakes {
+
+  /**
+   * Supplies the return value of a faked method.
+   */
+  public interface Answer {
+
+    /**
+     * @param args The arguments the method was invoked with. Never null.
+     * @return The value the faked method is to return.
+     * @throws Throwable
+     */
+    public Object answer(Object[] args) throws Throwable;
+
+  }
+
+  /**
+   * Notified before a faked method is invoked.
+   */
+  public interface Listener {
+
+    /**
+     * @param methodName The name of the method about to be invoked.
+     */
+    public void invoking(String methodName);
+
+  }
+
+  private static final Object[] NO_ARGS = new Object[0];
+
+  private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS =
+      new HashMap<Class<?>, Object>();
+
+  static {
+    PRIMITIVE_DEFAULTS.put(boolean.class, Boolean.FALSE);
+    PRIMITIVE_DEFAULTS.put(byte.class, Byte.valueOf((byte) 0));
+    PRIMITIVE_DEFAULTS.put(char.class, Character.valueOf((char) 0));
+    PRIMITIVE_DEFAULTS.put(short.class, Short.valueOf((short) 0));
+    PRIMITIVE_DEFAULTS.put(int.class, Integer.valueOf(0));
+    PRIMITIVE_DEFAULTS.put(long.class, Long.valueOf(0L));
+    PRIMITIVE_DEFAULTS.put(float.class, Float.valueOf(0f));
+    PRIMITIVE_DEFAULTS.put(double.class, Double.valueOf(0d));
+  }
+
+  /**
+   * Create a fake implementation of the given interface.
+   *
+   * @param type The interface to fake.
+   * @param answers Answers keyed by method name. Overloads share an answer.
+   * @return A fake implementation of the interface.
+   */
+  public static <T> T of(Class<T> type, Map<String, Answer> answers) {
+    return of(type, answers, null);
+  }
+
+  /**
+   * Create a fake implementation of the given interface that notifies a listener before each of
+   * its methods are invoked.
+   *
+   * @param type The interface to fake.
+   * @param answers Answers keyed by method name. Overloads share an answer.
+   * @param listener Notified before each method, other than those declared by
+   *        <code>Object</code>. May be null.
+   * @return A fake implementation of the interface.
+   */
+  public static <T> T of(Class<T> type, final Map<String, Answer> answers,
+      final Listener listener) {
+    final String description = "Fake " + type.getSimpleName();
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+              if ("equals".equals(name)) {
+                return proxy == args[0];
+              } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+              }
+              return description;
+            }
+            if (listener != null) {
+              listener.invoking(name);
+            }
+            Answer answer = answers.get(name);
+            if (answer != null) {
+              return answer.answer(args == null ? NO_ARGS : args);
+            }
+            return PRIMITIVE_DEFAULTS.get(method.getReturnType());
+          }
+        }));
+  }
+
+  /**
+   * Create a fake implementation of the interface returned by the named method. Handy when the
+   * caller has no need to reference the returned type by name.
+   *
+   * @param owner The class declaring the method.
+   * @param methodName The name of the method. When overloaded, the first one found is used.
+   * @param answers Answers keyed by method name.
+   * @return A fake implementation of the method's return type.
+   */
+  public static Object ofReturnType(Class<?> owner, String methodName,
+      Map<String, Answer> answers) {
+    return of(returnType(owner, methodName), answers);
+  }
+
+  /**
+   * Get the return type of the named method.
+   *
+   * @param owner The class declaring the method.
+   * @param methodName The name of the method. When overloaded, the first one found is used.
+   * @return The method's return type.
+   */
+  public static Class<?> returnType(Class<?> owner, String methodName) {
+    for (Method method : owner.getMethods()) {
+      if (method.getName().equals(methodName)) {
+        return method.getReturnType();
+      }
+    }
+    throw new IllegalArgumentException(owner.getName() + " has no method named " + methodName);
+  }
+
+  /**
+   * Create a fake implementation of the element type of the <code>List</code> returned by the
+   * named method.
+   *
+   * @param owner The class declaring the method.
+   * @param methodName The name of the method. When overloaded, the first one found is used.
+   * @param answers Answers keyed by method name.
+   * @return A fake implementation of the list's element type.
+   */
+  public static Object ofListElementType(Class<?> owner, String methodName,
+      Map<String, Answer> answers) {
+    for (Method method : owner.getMethods()) {
+      if (method.getName().equals(methodName)) {
+        Type type = method.getGenericReturnType();
+        if (type instanceof ParameterizedType) {
+          Type elementType = ((ParameterizedType) type).getActualTypeArguments()[0];
+          if (elementType instanceof Class) {
+            return of((Class<?>) elementType, answers);
+          }
+        }
+        throw new IllegalArgumentException(
+            owner.getName() + "#" + methodName + " does not return a typed List");
+      }
+    }
+    throw new IllegalArgumentException(owner.getName() + " has no method named " + methodName);
+  }
+
+  /**
+   * Get an answer that always returns the same value.
+   *
+   * @param value
+   * @return An answer returning the given value.
+   */
+  public static Answer returning(final Object value) {
+    return new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return value;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,882 @@
+package com.rsicms.rsuite.utils.mo.fakes;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.MetaDataItem;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.Session;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.browse.BrowseInfo;
+import com.reallysi.rsuite.api.control.ObjectSource;
+import com.reallysi.rsuite.api.control.XmlObjectSource;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.reallysi.rsuite.api.xml.XPathEvaluator;
+import com.reallysi.rsuite.service.ManagedObjectService;
+import com.rsicms.rsuite.utils.mo.fakes.Fakes.Answer;
+import com.rsicms.rsuite.utils.mo.fakes.Fakes.Listener;
+
+/**
+ * An in-memory stand-in for the parts of an RSuite repository MOUtils relies on. Exposes fakes of
+ * <code>ManagedObjectService</code>, <code>ManagedObject</code> and <code>ExecutionContext</code>
+ * backed by plain DOM trees, so MOUtils can be exercised without a server.
+ * <p>
+ * Each call to the <code>ManagedObjectService</code>, and to the <code>ManagedObject</code>
+ * methods RSuite resolves lazily, is treated as a repository round trip: it is counted per method
+ * and delayed according to the configured {@link LatencyModel}. Sub-MO trees, version histories,
+ * check outs and metadata are tracked, and updates replace the stored content, so MOUtils' write
+ * paths behave as they would against a server.
+ * <p>
+ * The repository rules copied from RSuite are:
+ * <ul>
+ * <li>A check out of an MO extends to its sub-MOs. The nearest checked-out ancestor-or-self
+ * decides who holds an MO, and an MO cannot be checked out while another user holds it or one of
+ * its sub-MOs.</li>
+ * <li>Only the holder of an MO's check out may update it. Only the user who checked out the MO
+ * itself may check it in or undo the check out.</li>
+ * <li>Checking in adds a version; undoing a check out does not.</li>
+ * <li>There is no check out information for an MO that is not checked out.</li>
+ * <li>An update replaces the MO's element, sub-MO elements included, and may not change an XML MO
+ * into a non-XML one.</li>
+ * <li>Child MOs are browsed a page at a time, in document order.</li>
+ * </ul>
+ * Anything else, such as access control, workflow and the content of version histories, is not
+ * modelled.
+ */
+public class InMemoryRepository {
+
+  /**
+   * Repository-side state of a single MO.
+   */
+  protected static class StoredMo {
+    protected final String id;
+    protected final String parentId;
+    protected final String rootId;
+    protected final List<String> childIds = new ArrayList<String>();
+    protected final List<MetaDataItem> metadata = new ArrayList<MetaDataItem>();
+    protected final List<String> revisions = new ArrayList<String>();
+    protected volatile Element element;
+    protected volatile String displayName;
+    protected volatile String checkOutUserId;
+    protected boolean nonXml;
+
+    protected StoredMo(String id, String parentId, String rootId) {
+      this.id = id;
+      this.parentId = parentId;
+      this.rootId = rootId;
+    }
+  }
+
+  /**
+   * <code>ManagedObject</code> methods treated as repository round trips.
+   */
+  private static final Set<String> LAZY_MO_METHODS = new HashSet<String>(Arrays.asList(
+      "getElement", "getMetaDataItems", "isCheckedout", "listDescendantManagedObjects"));
+
+  protected final Map<String, StoredMo> mos = new ConcurrentHashMap<String, StoredMo>();
+  private final AtomicInteger nextId = new AtomicInteger(1);
+  private final ConcurrentHashMap<String, AtomicLong> callCounts =
+      new ConcurrentHashMap<String, AtomicLong>();
+  private final AtomicLong totalCallCount = new AtomicLong();
+  private final ThreadLocal<long[]> threadCallCount = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+  private final Map<Object, Templates> transforms = new ConcurrentHashMap<Object, Templates>();
+  private volatile LatencyModel latency = LatencyModel.NONE;
+  private final ManagedObjectService moService;
+  private final ExecutionContext context;
+
+  public InMemoryRepository() {
+    this.moService = Fakes.of(ManagedObjectService.class, getManagedObjectServiceAnswers(),
+        new Listener() {
+          @Override
+          public void invoking(String methodName) {
+            roundTrip("ManagedObjectService." + methodName);
+          }
+        });
+    this.context = Fakes.of(ExecutionContext.class, getExecutionContextAnswers());
+  }
+
+  public ManagedObjectService getManagedObjectService() {
+    return moService;
+  }
+
+  public ExecutionContext getExecutionContext() {
+    return context;
+  }
+
+  /**
+   * Set the latency each repository round trip incurs.
+   *
+   * @param latency
+   */
+  public void setLatency(LatencyModel latency) {
+    this.latency = latency == null ? LatencyModel.NONE : latency;
+  }
+
+  /**
+   * Get the number of calls made to a method.
+   *
+   * @param method The method, qualified by its interface's simple name. For example,
+   *        "ManagedObjectService.getChildManagedObjects".
+   * @return The number of calls made since the counts were last reset.
+   */
+  public long getCallCount(String method) {
+    AtomicLong count = callCounts.get(method);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * @return A snapshot of the call counts of every method called since the counts were last reset.
+   */
+  public SortedMap<String, Long> getCallCounts() {
+    SortedMap<String, Long> snapshot = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> entry : callCounts.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().get());
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return Total number of round trips made, by all threads, since the counts were last reset.
+   */
+  public long getTotalCallCount() {
+    return totalCallCount.get();
+  }
+
+  /**
+   * Get the number of round trips the calling thread has made. Unaffected by
+   * {@link #resetCallCounts()}; callers interested in a single operation should compare before and
+   * after values.
+   *
+   * @return Total number of round trips made by the calling thread.
+   */
+  public long getThreadCallCount() {
+    return threadCallCount.get()[0];
+  }
+
+  /**
+   * Reset the per-method and total call counts.
+   */
+  public void resetCallCounts() {
+    callCounts.clear();
+    totalCallCount.set(0);
+  }
+
+  /**
+   * Get a fake session for the given user.
+   *
+   * @param user
+   * @return A session identifying the user.
+   */
+  public Session getSession(final User user) {
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("getUser", Fakes.returning(user));
+    answers.put("getKey", Fakes.returning("session-" + user.getUserId()));
+    return Fakes.of(Session.class, answers);
+  }
+
+  /**
+   * Get a fake user.
+   *
+   * @param userId
+   * @return A user with the given ID.
+   */
+  public User getUser(String userId) {
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("getUserId", Fakes.returning(userId));
+    return Fakes.of(User.class, answers);
+  }
+
+  /**
+   * Get an XPath evaluator backed by the JDK's XPath implementation.
+   *
+   * @return An XPath evaluator.
+   */
+  public XPathEvaluator getXPathEvaluator() {
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("executeXPathToNode", new Answer() {
+      @Override
+      public Object answer(Object[] args) throws XPathExpressionException {
+        return XPathFactory.newInstance().newXPath().evaluate((String) args[0], args[1],
+            XPathConstants.NODE);
+      }
+    });
+    return Fakes.of(XPathEvaluator.class, answers);
+  }
+
+  /**
+   * Add an XML MO to the repository.
+   *
+   * @param element The MO's element. When a sub-MO, it should be a descendant of the parent's
+   *        element.
+   * @param parentId The ID of the parent MO, or null for a top-level MO.
+   * @return The new MO's ID.
+   */
+  public String addXmlMo(Element element, String parentId) {
+    String id = String.valueOf(nextId.getAndIncrement());
+    StoredMo parent = parentId == null ? null : getStoredMo(parentId);
+    StoredMo stored = new StoredMo(id, parentId, parent == null ? id : parent.rootId);
+    stored.element = element;
+    stored.revisions.add("1.0");
+    mos.put(id, stored);
+    if (parent != null) {
+      synchronized (parent) {
+        parent.childIds.add(id);
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Add a top-level XML MO with the specified number of sub-MOs. Each sub-MO's content is padded
+   * out to approximately the given number of characters.
+   *
+   * @param childCount Number of sub-MOs to create.
+   * @param childSize Approximate number of characters of text within each sub-MO.
+   * @return The ID of the top-level MO.
+   */
+  public String addBook(int childCount, int childSize) {
+    Document doc = newDocument();
+    Element book = doc.createElement("book");
+    doc.appendChild(book);
+    String rootId = addXmlMo(book, null);
+    for (int i = 0; i < childCount; i++) {
+      Element chapter = doc.createElement("chapter");
+      chapter.setAttribute("n", String.valueOf(i));
+      fill(doc, chapter, childSize);
+      book.appendChild(chapter);
+      addXmlMo(chapter, rootId);
+    }
+    return rootId;
+  }
+
+  /**
+   * Register the XSL the <code>XmlApiManager</code> is to return transformers of for the given URI.
+   * Transformers of other URIs and files perform the identity transform.
+   *
+   * @param uri
+   * @param xsl The XSL's source.
+   * @throws TransformerConfigurationException Thrown if the XSL cannot be compiled.
+   */
+  public void addTransform(URI uri, String xsl) throws TransformerConfigurationException {
+    transforms.put(uri,
+        TransformerFactory.newInstance().newTemplates(new StreamSource(new StringReader(xsl))));
+  }
+
+  /**
+   * Replace the element of an existing MO.
+   *
+   * @param id
+   * @param element
+   */
+  public void setElement(String id, Element element) {
+    getStoredMo(id).element = element;
+  }
+
+  /**
+   * Check an MO out to the given user, without going through the
+   * <code>ManagedObjectService</code>.
+   *
+   * @param id
+   * @param user
+   */
+  public void checkOut(String id, User user) {
+    getStoredMo(id).checkOutUserId = user.getUserId();
+  }
+
+  /**
+   * Add a metadata entry to an MO, without going through the <code>ManagedObjectService</code>.
+   *
+   * @param id
+   * @param name
+   * @param value
+   */
+  public void addMetadata(String id, String name, String value) {
+    StoredMo stored = getStoredMo(id);
+    synchronized (stored) {
+      stored.metadata.add(new MetaDataItem(name, value));
+    }
+  }
+
+  /**
+   * Get an MO as the <code>ManagedObjectService</code> would return it.
+   *
+   * @param id
+   * @return The MO, or null when there is no MO with the given ID.
+   */
+  public ManagedObject getManagedObject(String id) {
+    final StoredMo stored = mos.get(id);
+    if (stored == null) {
+      return null;
+    }
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("getId", Fakes.returning(stored.id));
+    answers.put("isNonXml", Fakes.returning(stored.nonXml));
+    answers.put("getElement", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return stored.element;
+      }
+    });
+    answers.put("getLocalName", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return stored.element.getLocalName() == null ? stored.element.getNodeName()
+            : stored.element.getLocalName();
+      }
+    });
+    answers.put("getNamespaceURI", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return stored.element.getNamespaceURI();
+      }
+    });
+    answers.put("getDisplayName", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return stored.displayName;
+      }
+    });
+    answers.put("hasChildren", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        synchronized (stored) {
+          return !stored.childIds.isEmpty();
+        }
+      }
+    });
+    answers.put("listDescendantManagedObjects", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        List<ManagedObject> descendants = new ArrayList<ManagedObject>();
+        collectDescendants(stored, descendants);
+        return descendants;
+      }
+    });
+    answers.put("isCheckedout", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return getCheckOutUserId(stored) != null;
+      }
+    });
+    answers.put("getMetaDataItems", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        synchronized (stored) {
+          return new ArrayList<MetaDataItem>(stored.metadata);
+        }
+      }
+    });
+    return Fakes.of(ManagedObject.class, answers, new Listener() {
+      @Override
+      public void invoking(String methodName) {
+        if (LAZY_MO_METHODS.contains(methodName)) {
+          roundTrip("ManagedObject." + methodName);
+        }
+      }
+    });
+  }
+
+  /**
+   * Get the answers backing the fake <code>ManagedObjectService</code>. Subclasses may add to or
+   * replace entries.
+   *
+   * @return Answers keyed by method name.
+   */
+  protected Map<String, Answer> getManagedObjectServiceAnswers() {
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("getManagedObject", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return getManagedObject((String) args[1]);
+      }
+    });
+    answers.put("getRootManagedObjectId", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return getStoredMo((String) args[1]).rootId;
+      }
+    });
+    answers.put("isCheckedOut", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return getCheckOutUserId(getStoredMo((String) args[1])) != null;
+      }
+    });
+    answers.put("getChildManagedObjects", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return browse(getStoredMo((String) args[1]), (Integer) args[2], (Integer) args[3]);
+      }
+    });
+    answers.put("isCheckedOutButNotByUser", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        String holder = getCheckOutUserId(getStoredMo((String) args[1]));
+        return holder != null && !holder.equals(((User) args[0]).getUserId());
+      }
+    });
+    answers.put("isCheckedOutAuthor", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return ((User) args[0]).getUserId()
+            .equals(getCheckOutUserId(getStoredMo((String) args[1])));
+      }
+    });
+    answers.put("getCheckOutInfo", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        String userId = getCheckOutUserId(getStoredMo((String) args[0]));
+        if (userId == null) {
+          return null;
+        }
+        Map<String, Answer> infoAnswers = new HashMap<String, Answer>();
+        infoAnswers.put("getUserId", Fakes.returning(userId));
+        return Fakes.ofReturnType(ManagedObjectService.class, "getCheckOutInfo", infoAnswers);
+      }
+    });
+    answers.put("checkOut", new Answer() {
+      @Override
+      public Object answer(Object[] args) throws RSuiteException {
+        StoredMo stored = getStoredMo((String) args[1]);
+        String userId = ((User) args[0]).getUserId();
+        synchronized (stored) {
+          String holder = getCheckOutUserId(stored);
+          if (holder == null) {
+            // Checking out an MO checks out its sub-MOs, so none may be held by another user.
+            List<StoredMo> descendants = new ArrayList<StoredMo>();
+            collectStoredDescendants(stored, descendants);
+            for (StoredMo descendant : descendants) {
+              if (descendant.checkOutUserId != null
+                  && !descendant.checkOutUserId.equals(userId)) {
+                holder = descendant.checkOutUserId;
+                break;
+              }
+            }
+          }
+          if (holder != null && !holder.equals(userId)) {
+            throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+                "MO " + stored.id + " is checked out by " + holder);
+          }
+          stored.checkOutUserId = userId;
+        }
+        return null;
+      }
+    });
+    answers.put("undoCheckout", new Answer() {
+      @Override
+      public Object answer(Object[] args) throws RSuiteException {
+        releaseCheckOut(getStoredMo((String) args[1]), (User) args[0]);
+        return null;
+      }
+    });
+    answers.put("checkIn", new Answer() {
+      @Override
+      public Object answer(Object[] args) throws RSuiteException {
+        StoredMo stored = getStoredMo((String) args[1]);
+        synchronized (stored) {
+          releaseCheckOut(stored, (User) args[0]);
+          stored.revisions.add(0, "1." + stored.revisions.size());
+        }
+        return null;
+      }
+    });
+    answers.put("update", new Answer() {
+      @Override
+      public Object answer(Object[] args) throws RSuiteException {
+        StoredMo stored = getStoredMo((String) args[1]);
+        if (!((User) args[0]).getUserId().equals(getCheckOutUserId(stored))) {
+          throw new RSuiteException(RSuiteException.ERROR_OBJECT_NOT_CHECKED_OUT,
+              "MO " + stored.id + " is not checked out to the user.");
+        }
+        replaceElement(stored, readContent((ObjectSource) args[2]));
+        return null;
+      }
+    });
+    answers.put("load", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        Document doc = newDocument();
+        Element elem = doc.createElement("loaded");
+        doc.appendChild(elem);
+        return getManagedObject(addXmlMo(elem, null));
+      }
+    });
+    answers.put("getVersionHistory", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return getVersionHistory(getStoredMo((String) args[1]));
+      }
+    });
+    answers.put("setMetaDataEntries", new Answer() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public Object answer(Object[] args) {
+        StoredMo stored = getStoredMo((String) args[1]);
+        synchronized (stored) {
+          for (MetaDataItem item : (List<MetaDataItem>) args[2]) {
+            removeMetadata(stored, item.getName());
+            stored.metadata.add(item);
+          }
+        }
+        return null;
+      }
+    });
+    answers.put("removeMetaDataEntry", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        StoredMo stored = getStoredMo((String) args[1]);
+        MetaDataItem target = (MetaDataItem) args[2];
+        synchronized (stored) {
+          for (Iterator<MetaDataItem> it = stored.metadata.iterator(); it.hasNext();) {
+            MetaDataItem item = it.next();
+            if (item.getName().equals(target.getName())
+                && item.getValue().equals(target.getValue())) {
+              it.remove();
+              break;
+            }
+          }
+        }
+        return null;
+      }
+    });
+    return answers;
+  }
+
+  /**
+   * Get the answers backing the fake <code>ExecutionContext</code>.
+   *
+   * @return Answers keyed by method name.
+   */
+  protected Map<String, Answer> getExecutionContextAnswers() {
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("getManagedObjectService", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return moService;
+      }
+    });
+
+    Map<String, Answer> configAnswers = new HashMap<String, Answer>();
+    configAnswers.put("isTreatAsXmlFileExtension", new Answer() {
+      @Override
+      public Object answer(Object[] args) {
+        return "xml".equalsIgnoreCase((String) args[0]);
+      }
+    });
+    answers.put("getRSuiteServerConfiguration", Fakes.returning(
+        Fakes.ofReturnType(ExecutionContext.class, "getRSuiteServerConfiguration", configAnswers)));
+
+    Map<String, Answer> xmlApiAnswers = new HashMap<String, Answer>();
+    xmlApiAnswers.put("getTransformer", new Answer() {
+      @Override
+      public Object answer(Object[] args) throws TransformerConfigurationException {
+        Templates templates = args[0] == null ? null : transforms.get(args[0]);
+        return templates == null ? TransformerFactory.newInstance().newTransformer()
+            : templates.newTransformer();
+      }
+    });
+    answers.put("getXmlApiManager", Fakes
+        .returning(Fakes.ofReturnType(ExecutionContext.class, "getXmlApiManager", xmlApiAnswers)));
+    return answers;
+  }
+
+  protected StoredMo getStoredMo(String id) {
+    StoredMo stored = mos.get(id);
+    if (stored == null) {
+      throw new IllegalArgumentException("No MO with ID " + id);
+    }
+    return stored;
+  }
+
+  protected BrowseInfo browse(StoredMo parent, int start, int end) {
+    final List<ManagedObject> page = new ArrayList<ManagedObject>();
+    final int total;
+    synchronized (parent) {
+      total = parent.childIds.size();
+      for (int i = Math.max(start, 0); i < Math.min(end, total); i++) {
+        page.add(getManagedObject(parent.childIds.get(i)));
+      }
+    }
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("getTotal", Fakes.returning(total));
+    answers.put("getManagedObjects", Fakes.returning(page));
+    return Fakes.of(BrowseInfo.class, answers);
+  }
+
+  protected Object getVersionHistory(StoredMo stored) {
+    final List<Object> entries = new ArrayList<Object>();
+    synchronized (stored) {
+      for (String revision : stored.revisions) {
+        Map<String, Answer> entryAnswers = new HashMap<String, Answer>();
+        entryAnswers.put("getRevisionNumber", Fakes.returning(revision));
+        entries.add(Fakes.ofListElementType(
+            Fakes.returnType(ManagedObjectService.class, "getVersionHistory"),
+            "getVersionEntries", entryAnswers));
+      }
+    }
+    Map<String, Answer> answers = new HashMap<String, Answer>();
+    answers.put("size", Fakes.returning(entries.size()));
+    answers.put("getVersionEntries", Fakes.returning(Collections.unmodifiableList(entries)));
+    return Fakes.ofReturnType(ManagedObjectService.class, "getVersionHistory", answers);
+  }
+
+  /**
+   * Replace an MO's element within its document, as an update would. Sub-MOs of the MO are rebound
+   * to the elements at the same positions within the new element; those without one keep their
+   * previous, now detached, elements.
+   *
+   * @param stored
+   * @param element
+   */
+  protected void replaceElement(StoredMo stored, Element element) {
+    List<StoredMo> descendants = new ArrayList<StoredMo>();
+    collectStoredDescendants(stored, descendants);
+    synchronized (stored) {
+      Element current = stored.element;
+      Element replacement = (Element) current.getOwnerDocument().importNode(element, true);
+      List<int[]> paths = new ArrayList<int[]>(descendants.size());
+      for (StoredMo descendant : descendants) {
+        paths.add(getPath(current, descendant.element));
+      }
+      if (current.getParentNode() != null) {
+        current.getParentNode().replaceChild(replacement, current);
+      }
+      stored.element = replacement;
+      for (int i = 0; i < descendants.size(); i++) {
+        Element rebound = resolvePath(replacement, paths.get(i));
+        if (rebound != null) {
+          descendants.get(i).element = rebound;
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the content of an object source, as an element. MOs added to this repository are XML, and
+   * an update does not change an MO's type, so only an <code>XmlObjectSource</code> is accepted.
+   *
+   * @param source
+   * @return The source's root element.
+   * @throws RSuiteException Thrown if the source is not XML or its content cannot be parsed.
+   */
+  protected Element readContent(ObjectSource source) throws RSuiteException {
+    if (!(source instanceof XmlObjectSource)) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "An XML MO cannot be updated with a " + source.getClass().getSimpleName() + ".");
+    }
+    InputStream is = ((XmlObjectSource) source).getInputStream();
+    try {
+      return parse(is);
+    } catch (Exception e) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "Unable to parse the content of the object source: " + e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  private Element parse(InputStream is) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    return factory.newDocumentBuilder().parse(is).getDocumentElement();
+  }
+
+  /**
+   * @return The element child indexes leading from the ancestor to the descendant, or null when
+   *         the latter is not within the former.
+   */
+  private int[] getPath(Element ancestor, Node descendant) {
+    List<Integer> indexes = new ArrayList<Integer>();
+    Node node = descendant;
+    while (node != null && node != ancestor) {
+      int index = 0;
+      for (Node sibling = node.getPreviousSibling(); sibling != null; sibling =
+          sibling.getPreviousSibling()) {
+        if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+          index++;
+        }
+      }
+      indexes.add(0, index);
+      node = node.getParentNode();
+    }
+    if (node == null) {
+      return null;
+    }
+    int[] path = new int[indexes.size()];
+    for (int i = 0; i < path.length; i++) {
+      path[i] = indexes.get(i);
+    }
+    return path;
+  }
+
+  private Element resolvePath(Element ancestor, int[] path) {
+    if (path == null) {
+      return null;
+    }
+    Element element = ancestor;
+    for (int index : path) {
+      Element child = null;
+      int count = 0;
+      for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+        if (node.getNodeType() == Node.ELEMENT_NODE && count++ == index) {
+          child = (Element) node;
+          break;
+        }
+      }
+      if (child == null) {
+        return null;
+      }
+      element = child;
+    }
+    return element;
+  }
+
+  private void collectStoredDescendants(StoredMo parent, List<StoredMo> descendants) {
+    List<String> childIds;
+    synchronized (parent) {
+      childIds = new ArrayList<String>(parent.childIds);
+    }
+    for (String childId : childIds) {
+      StoredMo child = getStoredMo(childId);
+      descendants.add(child);
+      collectStoredDescendants(child, descendants);
+    }
+  }
+
+  /**
+   * Get the user an MO is checked out to. A check out of an MO extends to its sub-MOs, so when the
+   * MO is not checked out itself, its nearest checked out ancestor determines the user.
+   *
+   * @param stored
+   * @return The user ID, or null when neither the MO nor any of its ancestors is checked out.
+   */
+  protected String getCheckOutUserId(StoredMo stored) {
+    StoredMo mo = stored;
+    String userId = mo.checkOutUserId;
+    while (userId == null && mo.parentId != null) {
+      mo = getStoredMo(mo.parentId);
+      userId = mo.checkOutUserId;
+    }
+    return userId;
+  }
+
+  private void releaseCheckOut(StoredMo stored, User user) throws RSuiteException {
+    synchronized (stored) {
+      if (!user.getUserId().equals(stored.checkOutUserId)) {
+        throw new RSuiteException(RSuiteException.ERROR_OBJECT_NOT_CHECKED_OUT,
+            "MO " + stored.id + " is not checked out to the user.");
+      }
+      stored.checkOutUserId = null;
+    }
+  }
+
+  private void removeMetadata(StoredMo stored, String name) {
+    for (Iterator<MetaDataItem> it = stored.metadata.iterator(); it.hasNext();) {
+      if (it.next().getName().equals(name)) {
+        it.remove();
+      }
+    }
+  }
+
+  private void roundTrip(String method) {
+    AtomicLong count = callCounts.get(method);
+    if (count == null) {
+      AtomicLong newCount = new AtomicLong();
+      count = callCounts.putIfAbsent(method, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    count.incrementAndGet();
+    totalCallCount.incrementAndGet();
+    threadCallCount.get()[0]++;
+    latency.delay();
+  }
+
+  private void collectDescendants(StoredMo parent, List<ManagedObject> descendants) {
+    List<String> childIds;
+    synchronized (parent) {
+      childIds = new ArrayList<String>(parent.childIds);
+    }
+    for (String childId : childIds) {
+      descendants.add(getManagedObject(childId));
+      collectDescendants(getStoredMo(childId), descendants);
+    }
+  }
+
+  /**
+   * Create a new, empty DOM document.
+   *
+   * @return A new document.
+   */
+  public static Document newDocument() {
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      return factory.newDocumentBuilder().newDocument();
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Append paragraphs to the given element until it holds approximately the requested number of
+   * characters.
+   *
+   * @param doc
+   * @param parent
+   * @param size
+   */
+  public static void fill(Document doc, Node parent, int size) {
+    String sentence = "The quick brown fox jumps over the lazy dog. ";
+    StringBuilder sb = new StringBuilder();
+    int remaining = size;
+    while (remaining > 0) {
+      sb.setLength(0);
+      for (int i = 0; i < 10 && remaining > 0; i++) {
+        sb.append(sentence);
+        remaining -= sentence.length();
+      }
+      Element para = doc.createElement("p");
+      para.appendChild(doc.createTextNode(sb.toString()));
+      parent.appendChild(para);
+    }
+  }
+
+}
@@ -0,0 +1,75 @@
+package com.rsicms.rsuite.utils.mo.fakes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated per-call repository latency: a fixed base plus uniformly distributed jitter.
+ */
+public class LatencyModel {
+
+  /**
+   * No latency at all.
+   */
+  public static final LatencyModel NONE = new LatencyModel(0, 0);
+
+  private final long baseNanos;
+  private final long jitterNanos;
+  private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+    @Override
+    protected Random initialValue() {
+      return new Random();
+    }
+  };
+
+  /**
+   * @param baseMicros Latency every call incurs.
+   * @param jitterMicros Maximum additional latency, randomly chosen per call.
+   */
+  public LatencyModel(long baseMicros, long jitterMicros) {
+    this.baseNanos = TimeUnit.MICROSECONDS.toNanos(baseMicros);
+    this.jitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+  }
+
+  /**
+   * Get a latency model from a specification in the form <code>base[+jitter]</code>, both in
+   * microseconds. For example, "2000+500".
+   *
+   * @param spec
+   * @return The corresponding latency model.
+   */
+  public static LatencyModel parse(String spec) {
+    String[] parts = spec.split("\\+");
+    return new LatencyModel(Long.parseLong(parts[0].trim()),
+        parts.length > 1 ? Long.parseLong(parts[1].trim()) : 0);
+  }
+
+  /**
+   * Block the calling thread for one call's worth of latency.
+   */
+  public void delay() {
+    long nanos = baseNanos;
+    if (jitterNanos > 0) {
+      nanos += (long) (random.get().nextDouble() * jitterNanos);
+    }
+    if (nanos <= 0) {
+      return;
+    }
+    long deadline = System.nanoTime() + nanos;
+    try {
+      while (nanos > 0) {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+        nanos = deadline - System.nanoTime();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return TimeUnit.NANOSECONDS.toMicros(baseNanos) + "+"
+        + TimeUnit.NANOSECONDS.toMicros(jitterNanos) + "us";
+  }
+
+}
@@ -0,0 +1,409 @@
+package com.rsicms.rsuite.utils.mo;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.Session;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.VersionSpecifier;
+import com.reallysi.rsuite.api.control.ManagedObjectAdvisor;
+import com.reallysi.rsuite.api.control.ObjectSource;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.reallysi.rsuite.service.ManagedObjectService;
+
+/**
+ * Asynchronous versions of MOUtils' repository-bound methods. Each method returns immediately with
+ * a {@link ListenableFuture}; the work is performed on the configured executor. Any exception
+ * thrown by the underlying MOUtils method is available as the cause of the
+ * <code>ExecutionException</code> thrown by <code>Future#get()</code>. To be told of the outcome
+ * without blocking, register a {@link CompletionListener} on the future.
+ * <p>
+ * No more than the configured number of operations run concurrently for any one user. Additional
+ * operations for that user wait their turn without occupying an executor thread, so one user's
+ * bulk job cannot take over the repository.
+ */
+public class AsyncMOUtils {
+
+  /**
+   * Per-user bookkeeping: how many operations are running and which are waiting.
+   */
+  private static class UserSlots {
+    private int running;
+    private final Queue<OperationTask<?>> waiting = new LinkedList<OperationTask<?>>();
+  }
+
+  /**
+   * An operation's future, which may also be completed with the reason it could not be run.
+   */
+  private static class OperationTask<T> extends FutureTask<T> implements ListenableFuture<T> {
+
+    // Listeners yet to be notified; null once the future is done.
+    private List<CompletionListener<? super T>> listeners =
+        new ArrayList<CompletionListener<? super T>>();
+
+    private OperationTask(Callable<T> callable) {
+      super(callable);
+    }
+
+    @Override
+    public void addListener(CompletionListener<? super T> listener) {
+      synchronized (this) {
+        if (listeners != null) {
+          listeners.add(listener);
+          return;
+        }
+      }
+      notifyListener(listener);
+    }
+
+    @Override
+    protected void done() {
+      List<CompletionListener<? super T>> toNotify;
+      synchronized (this) {
+        toNotify = listeners;
+        listeners = null;
+      }
+      for (CompletionListener<? super T> listener : toNotify) {
+        notifyListener(listener);
+      }
+    }
+
+    /**
+     * Report the outcome of the completed future to a listener.
+     *
+     * @param listener
+     */
+    private void notifyListener(CompletionListener<? super T> listener) {
+      try {
+        T result;
+        try {
+          result = get();
+        } catch (ExecutionException e) {
+          listener.onFailure(e.getCause());
+          return;
+        } catch (CancellationException e) {
+          listener.onFailure(e);
+          return;
+        } catch (InterruptedException e) {
+          // Not expected, as the future is done and get() does not wait.
+          Thread.currentThread().interrupt();
+          listener.onFailure(e);
+          return;
+        }
+        listener.onSuccess(result);
+      } catch (RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
+    }
+
+    /**
+     * Complete the future without running the operation.
+     *
+     * @param cause Made available as the cause of the <code>ExecutionException</code>.
+     */
+    private void reject(Throwable cause) {
+      setException(cause);
+    }
+  }
+
+  private final MOUtils moUtils;
+  private final ExecutorService executor;
+  private final int maxConcurrentPerUser;
+  private final Map<String, UserSlots> slotsByUser = new HashMap<String, UserSlots>();
+
+  /**
+   * @param executor The executor to perform operations on. See {@link #newDefaultExecutor()}.
+   * @param maxConcurrentPerUser The maximum number of operations to run concurrently for a single
+   *        user.
+   */
+  public AsyncMOUtils(ExecutorService executor, int maxConcurrentPerUser) {
+    this(new MOUtils(), executor, maxConcurrentPerUser);
+  }
+
+  /**
+   * @param moUtils The MOUtils instance to delegate to.
+   * @param executor The executor to perform operations on. See {@link #newDefaultExecutor()}.
+   * @param maxConcurrentPerUser The maximum number of operations to run concurrently for a single
+   *        user.
+   */
+  public AsyncMOUtils(MOUtils moUtils, ExecutorService executor, int maxConcurrentPerUser) {
+    if (maxConcurrentPerUser < 1) {
+      throw new IllegalArgumentException("maxConcurrentPerUser must be at least 1.");
+    }
+    this.moUtils = moUtils;
+    this.executor = executor;
+    this.maxConcurrentPerUser = maxConcurrentPerUser;
+  }
+
+  /**
+   * Get an executor suited to repository-bound work: one virtual thread per task when the JVM
+   * offers them; else, a cached thread pool. The caller is responsible for shutting it down.
+   *
+   * @return A new executor.
+   */
+  public static ExecutorService newDefaultExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (Exception e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link MOUtils#load(ExecutionContext, User, String, InputStream, String, ManagedObjectAdvisor)}
+   * . The input stream is read on the executor; the caller should not close it until the returned
+   * future is done.
+   *
+   * @param context
+   * @param user
+   * @param filename
+   * @param is
+   * @param encoding
+   * @param moAdvisor
+   * @return A future of the <code>ManagedObject</code> loaded in RSuite.
+   */
+  public ListenableFuture<ManagedObject> load(final ExecutionContext context, final User user,
+      final String filename, final InputStream is, final String encoding,
+      final ManagedObjectAdvisor moAdvisor) {
+    return submit(user, new Callable<ManagedObject>() {
+      @Override
+      public ManagedObject call() throws Exception {
+        return moUtils.load(context, user, filename, is, encoding, moAdvisor);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link MOUtils#load(ExecutionContext, User, String, ObjectSource, ManagedObjectAdvisor)}.
+   *
+   * @param context
+   * @param user
+   * @param filename
+   * @param objectSource
+   * @param moAdvisor
+   * @return A future of the <code>ManagedObject</code> loaded in RSuite.
+   */
+  public ListenableFuture<ManagedObject> load(final ExecutionContext context, final User user,
+      final String filename, final ObjectSource objectSource,
+      final ManagedObjectAdvisor moAdvisor) {
+    return submit(user, new Callable<ManagedObject>() {
+      @Override
+      public ManagedObject call() throws Exception {
+        return moUtils.load(context, user, filename, objectSource, moAdvisor);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of {@link MOUtils#checkout(ExecutionContext, User, String)}.
+   *
+   * @param context
+   * @param user
+   * @param id
+   * @return A future of true if the MO was checked out; false if the MO was already checked out to
+   *         the specified user.
+   */
+  public ListenableFuture<Boolean> checkout(final ExecutionContext context, final User user,
+      final String id) {
+    return submit(user, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return moUtils.checkout(context, user, id);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of {@link MOUtils#isCheckedOut(ManagedObjectService, User, String, boolean)}
+   * .
+   *
+   * @param moService
+   * @param user
+   * @param id
+   * @param includeSubMos Submit true to check the MO's sub-MOs.
+   * @return A future of true if the MO, or when requested one of its sub-MOs, is checked out.
+   */
+  public ListenableFuture<Boolean> isCheckedOut(final ManagedObjectService moService,
+      final User user, final String id, final boolean includeSubMos) {
+    return submit(user, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return moUtils.isCheckedOut(moService, user, id, includeSubMos);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link MOUtils#getPreviousVersionSpecifier(ExecutionContext, User, String)}.
+   *
+   * @param context
+   * @param user
+   * @param id
+   * @return A future of the version specifier immediately preceding the current version, or of null
+   *         if there is only one version of the MO.
+   */
+  public ListenableFuture<VersionSpecifier> getPreviousVersionSpecifier(
+      final ExecutionContext context, final User user, final String id) {
+    return submit(user, new Callable<VersionSpecifier>() {
+      @Override
+      public VersionSpecifier call() throws Exception {
+        return moUtils.getPreviousVersionSpecifier(context, user, id);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link MOUtils#deleteMetadataEntries(User, ManagedObjectService, String, String)}.
+   *
+   * @param user
+   * @param moService
+   * @param moid
+   * @param lmdName
+   * @return A future that completes once the metadata has been deleted.
+   */
+  public ListenableFuture<Void> deleteMetadataEntries(final User user,
+      final ManagedObjectService moService, final String moid, final String lmdName) {
+    return submit(user, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        moUtils.deleteMetadataEntries(user, moService, moid, lmdName);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link MOUtils#applyTransformAndUpdate(ExecutionContext, Session, ManagedObject, URI, Map, boolean, String, String, String)}
+   * . Operations are limited per the session's user.
+   *
+   * @param context
+   * @param session
+   * @param mo
+   * @param xslUri
+   * @param xslParams
+   * @param includeStandardRSuiteXslParams
+   * @param baseRSuiteUrl
+   * @param resultEncoding
+   * @param versionNote
+   * @return A future that completes once the MO has been updated and checked in.
+   */
+  public ListenableFuture<Void> applyTransformAndUpdate(final ExecutionContext context,
+      final Session session, final ManagedObject mo, final URI xslUri,
+      final Map<String, Object> xslParams, final boolean includeStandardRSuiteXslParams,
+      final String baseRSuiteUrl, final String resultEncoding, final String versionNote) {
+    return submit(session.getUser(), new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        moUtils.applyTransformAndUpdate(context, session, mo, xslUri, xslParams,
+            includeStandardRSuiteXslParams, baseRSuiteUrl, resultEncoding, versionNote);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Submit a task on behalf of a user, either running it now or queuing it until one of the user's
+   * other operations completes.
+   *
+   * @param user
+   * @param task
+   * @return The task's future.
+   */
+  private <T> ListenableFuture<T> submit(User user, Callable<T> task) {
+    String userId = user.getUserId();
+    OperationTask<T> future = new OperationTask<T>(task);
+    synchronized (slotsByUser) {
+      UserSlots slots = slotsByUser.get(userId);
+      if (slots == null) {
+        slots = new UserSlots();
+        slotsByUser.put(userId, slots);
+      }
+      if (slots.running >= maxConcurrentPerUser) {
+        slots.waiting.add(future);
+        return future;
+      }
+      slots.running++;
+    }
+    dispatch(userId, future);
+    return future;
+  }
+
+  /**
+   * Run the operation on the executor. Should the executor reject it, the operation's future is
+   * completed with the <code>RejectedExecutionException</code>, and the user's next waiting
+   * operation is tried in its place.
+   *
+   * @param userId
+   * @param task
+   */
+  private void dispatch(final String userId, OperationTask<?> task) {
+    while (task != null) {
+      final OperationTask<?> current = task;
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              current.run();
+            } finally {
+              release(userId);
+            }
+          }
+        });
+        return;
+      } catch (RejectedExecutionException e) {
+        current.reject(e);
+        task = next(userId);
+      }
+    }
+  }
+
+  /**
+   * Run the user's next waiting operation in the slot just freed.
+   *
+   * @param userId
+   */
+  private void release(String userId) {
+    dispatch(userId, next(userId));
+  }
+
+  /**
+   * Hand the user's slot to their next waiting operation, or give it up when there is none.
+   *
+   * @param userId
+   * @return The operation to run in the slot, or null when there is none.
+   */
+  private OperationTask<?> next(String userId) {
+    synchronized (slotsByUser) {
+      UserSlots slots = slotsByUser.get(userId);
+      OperationTask<?> next = slots.waiting.poll();
+      if (next == null && --slots.running == 0) {
+        slotsByUser.remove(userId);
+      }
+      return next;
+    }
+  }
+
+}
@@ -0,0 +1,21 @@
+package com.rsicms.rsuite.utils.mo;
+
+/**
+ * Lets one thread ask an operation running on another to stop. See {@link OperationContext}.
+ */
+public class CancellationToken {
+
+  private volatile boolean cancelled;
+
+  /**
+   * Ask the operations using this token to stop at their next opportunity.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+}
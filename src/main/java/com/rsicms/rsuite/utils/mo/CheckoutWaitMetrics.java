@@ -0,0 +1,130 @@
+package com.rsicms.rsuite.utils.mo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock contention statistics of checkouts made via
+ * {@link MOUtils#checkout(com.reallysi.rsuite.api.extensions.ExecutionContext, com.reallysi.rsuite.api.User, String, long)}
+ * , accumulated across the JVM since the last reset.
+ */
+public class CheckoutWaitMetrics {
+
+  private final AtomicLong waitCount = new AtomicLong();
+  private final AtomicLong acquiredAfterWaitCount = new AtomicLong();
+  private final AtomicLong timeoutCount = new AtomicLong();
+  private final AtomicLong interruptedCount = new AtomicLong();
+  private final AtomicLong localWakeUpCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+
+  /**
+   * @return Number of checkouts that had to wait for another user: those acquired after waiting,
+   *         timed out and interrupted.
+   */
+  public long getWaitCount() {
+    return waitCount.get();
+  }
+
+  /**
+   * @return Number of checkouts that succeeded after waiting.
+   */
+  public long getAcquiredAfterWaitCount() {
+    return acquiredAfterWaitCount.get();
+  }
+
+  /**
+   * @return Number of checkouts that gave up after waiting until their deadline.
+   */
+  public long getTimeoutCount() {
+    return timeoutCount.get();
+  }
+
+  /**
+   * @return Number of checkouts that gave up because their thread was interrupted while waiting.
+   */
+  public long getInterruptedCount() {
+    return interruptedCount.get();
+  }
+
+  /**
+   * @return Number of times a waiter was woken by a release made within this JVM, as opposed to
+   *         discovering the release by polling.
+   */
+  public long getLocalWakeUpCount() {
+    return localWakeUpCount.get();
+  }
+
+  /**
+   * @return Total time spent waiting, in milliseconds.
+   */
+  public long getTotalWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+  }
+
+  /**
+   * @return Longest single wait, in milliseconds.
+   */
+  public long getMaxWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+  }
+
+  /**
+   * @return Average wait of the checkouts that had to wait, in milliseconds.
+   */
+  public long getAverageWaitMillis() {
+    long waits = waitCount.get();
+    return waits == 0 ? 0 : getTotalWaitMillis() / waits;
+  }
+
+  /**
+   * Zero all statistics.
+   */
+  public void reset() {
+    waitCount.set(0);
+    acquiredAfterWaitCount.set(0);
+    timeoutCount.set(0);
+    interruptedCount.set(0);
+    localWakeUpCount.set(0);
+    totalWaitNanos.set(0);
+    maxWaitNanos.set(0);
+  }
+
+  void recordWait(long waitNanos, boolean acquired) {
+    if (acquired) {
+      acquiredAfterWaitCount.incrementAndGet();
+    } else {
+      timeoutCount.incrementAndGet();
+    }
+    addWait(waitNanos);
+  }
+
+  void recordInterruptedWait(long waitNanos) {
+    interruptedCount.incrementAndGet();
+    addWait(waitNanos);
+  }
+
+  private void addWait(long waitNanos) {
+    waitCount.incrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+    long max = maxWaitNanos.get();
+    while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+      max = maxWaitNanos.get();
+    }
+  }
+
+  void recordLocalWakeUp() {
+    localWakeUpCount.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("waits=").append(getWaitCount()).append(", acquiredAfterWait=")
+        .append(getAcquiredAfterWaitCount()).append(", timeouts=").append(getTimeoutCount())
+        .append(", interrupted=").append(getInterruptedCount()).append(", localWakeUps=")
+        .append(getLocalWakeUpCount()).append(", totalWaitMillis=").append(getTotalWaitMillis())
+        .append(", maxWaitMillis=").append(getMaxWaitMillis())
+        .toString();
+  }
+
+}
@@ -0,0 +1,142 @@
+package com.rsicms.rsuite.utils.mo;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process queues of threads waiting to check out MOs. A release made through MOUtils wakes the
+ * longest-waiting thread of the released MO, sparing it from having to discover the release by
+ * polling the repository.
+ * <p>
+ * A thread joins the queue before it first checks the MO, and stays in it until done, so a release
+ * made between a check and the following wait is not missed: its signal is held by the waiter until
+ * the next {@link #await(Waiter, long)}.
+ */
+class CheckoutWaitQueue {
+
+  /**
+   * A thread's place in an MO's queue.
+   */
+  static class Waiter {
+    private final String id;
+    private final Condition condition;
+    private boolean signalled;
+
+    private Waiter(String id, Condition condition) {
+      this.id = id;
+      this.condition = condition;
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, LinkedList<Waiter>> waitersById =
+      new HashMap<String, LinkedList<Waiter>>();
+  private final CheckoutWaitMetrics metrics = new CheckoutWaitMetrics();
+
+  CheckoutWaitMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Join the queue of the given MO. Must be followed by {@link #dequeue(Waiter)}.
+   *
+   * @param id ID of the MO to wait on.
+   * @return The caller's place in the queue.
+   */
+  Waiter enqueue(String id) {
+    lock.lock();
+    try {
+      LinkedList<Waiter> waiters = waitersById.get(id);
+      if (waiters == null) {
+        waiters = new LinkedList<Waiter>();
+        waitersById.put(id, waiters);
+      }
+      Waiter waiter = new Waiter(id, lock.newCondition());
+      waiters.add(waiter);
+      return waiter;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait until signalled or the specified amount of time passes. Returns immediately when signalled
+   * since the previous call.
+   *
+   * @param waiter
+   * @param nanos Maximum amount of time to wait.
+   * @return True if woken by {@link #signal(String)}.
+   * @throws InterruptedException
+   */
+  boolean await(Waiter waiter, long nanos) throws InterruptedException {
+    lock.lock();
+    try {
+      long remaining = nanos;
+      while (!waiter.signalled && remaining > 0) {
+        remaining = waiter.condition.awaitNanos(remaining);
+      }
+      boolean signalled = waiter.signalled;
+      waiter.signalled = false;
+      if (signalled) {
+        metrics.recordLocalWakeUp();
+      }
+      return signalled;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Leave the MO's queue. A signal the waiter received but did not consume is passed on to the next
+   * waiter.
+   *
+   * @param waiter
+   */
+  void dequeue(Waiter waiter) {
+    lock.lock();
+    try {
+      LinkedList<Waiter> waiters = waitersById.get(waiter.id);
+      if (waiters == null || !waiters.remove(waiter)) {
+        return;
+      }
+      if (waiters.isEmpty()) {
+        waitersById.remove(waiter.id);
+      } else if (waiter.signalled) {
+        signal(waiters);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wake the longest-waiting thread of the given MO not already signalled, if there is one.
+   *
+   * @param id ID of the released MO.
+   */
+  void signal(String id) {
+    lock.lock();
+    try {
+      LinkedList<Waiter> waiters = waitersById.get(id);
+      if (waiters != null) {
+        signal(waiters);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void signal(LinkedList<Waiter> waiters) {
+    for (Waiter waiter : waiters) {
+      if (!waiter.signalled) {
+        waiter.signalled = true;
+        waiter.condition.signal();
+        return;
+      }
+    }
+  }
+
+}
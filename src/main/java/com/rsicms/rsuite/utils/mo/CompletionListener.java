@@ -0,0 +1,25 @@
+package com.rsicms.rsuite.utils.mo;
+
+/**
+ * Receives the outcome of an operation once it completes. See {@link ListenableFuture}.
+ *
+ * @param <T> The operation's result type.
+ */
+public interface CompletionListener<T> {
+
+  /**
+   * Called when the operation completes normally.
+   *
+   * @param result
+   */
+  void onSuccess(T result);
+
+  /**
+   * Called when the operation fails, could not be run, or is cancelled.
+   *
+   * @param cause The exception the operation threw, the reason it could not be run, or a
+   *        <code>CancellationException</code>.
+   */
+  void onFailure(Throwable cause);
+
+}
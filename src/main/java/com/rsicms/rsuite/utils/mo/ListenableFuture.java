@@ -0,0 +1,24 @@
+package com.rsicms.rsuite.utils.mo;
+
+import java.util.concurrent.Future;
+
+/**
+ * A <code>Future</code> that can also report its outcome to listeners, so callers do not need to
+ * block on <code>get()</code> to learn when an operation completes.
+ *
+ * @param <T> The operation's result type.
+ */
+public interface ListenableFuture<T> extends Future<T> {
+
+  /**
+   * Register a listener to notify once the future completes. Listeners are notified on the thread
+   * that completes the future, in the order registered; when the future is already complete, the
+   * listener is notified immediately, on the calling thread. Listeners should be quick and should
+   * not block. An exception thrown by one is passed to the notifying thread's uncaught exception
+   * handler, and does not prevent the others from being notified.
+   *
+   * @param listener
+   */
+  void addListener(CompletionListener<? super T> listener);
+
+}
@@ -9,10 +9,23 @@ import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 
@@ -21,9 +34,13 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import com.reallysi.rsuite.api.CheckOutInfo;
 import com.reallysi.rsuite.api.ContentAssemblyItem;
 import com.reallysi.rsuite.api.ManagedObject;
 import com.reallysi.rsuite.api.ManagedObjectReference;
@@ -34,7 +51,6 @@ import com.reallysi.rsuite.api.User;
 import com.reallysi.rsuite.api.VersionHistory;
 import com.reallysi.rsuite.api.VersionSpecifier;
 import com.reallysi.rsuite.api.VersionType;
-import com.reallysi.rsuite.api.browse.BrowseInfo;
 import com.reallysi.rsuite.api.control.ManagedObjectAdvisor;
 import com.reallysi.rsuite.api.control.NonXmlObjectSource;
 import com.reallysi.rsuite.api.control.ObjectCheckInOptions;
@@ -45,6 +61,9 @@ import com.reallysi.rsuite.api.control.XmlObjectSource;
 import com.reallysi.rsuite.api.extensions.ExecutionContext;
 import com.reallysi.rsuite.api.xml.XPathEvaluator;
 import com.reallysi.rsuite.service.ManagedObjectService;
+import com.rsicms.rsuite.utils.mo.browse.BrowseException;
+import com.rsicms.rsuite.utils.mo.browse.ChildManagedObjectIterator;
+import com.rsicms.rsuite.utils.mo.io.EncodingUtils;
 import com.rsicms.rsuite.utils.xml.DomUtils;
 import com.rsicms.rsuite.utils.xml.TransformUtils;
 
@@ -53,6 +72,55 @@ import com.rsicms.rsuite.utils.xml.TransformUtils;
  */
 public class MOUtils {
 
+  /**
+   * Initial interval between checks of whether another user released an MO.
+   */
+  private static final long CHECKOUT_POLL_INITIAL_MILLIS = 100;
+
+  /**
+   * Maximum interval between checks of whether another user released an MO.
+   */
+  private static final long CHECKOUT_POLL_MAX_MILLIS = 5000;
+
+  /**
+   * Threads waiting to check out MOs. Static as MOUtils instances are typically short-lived.
+   */
+  private static final CheckoutWaitQueue CHECKOUT_WAIT_QUEUE = new CheckoutWaitQueue();
+
+  /**
+   * How often to check for cancellation while waiting for a transform running on another thread.
+   */
+  private static final long TRANSFORM_WAIT_SLICE_MILLIS = 100;
+
+  /**
+   * Resolves every external entity to empty content, so parsing never reaches out for a DTD.
+   */
+  private static final EntityResolver NO_EXTERNAL_ENTITIES = new EntityResolver() {
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) {
+      return new InputSource(new StringReader(""));
+    }
+  };
+
+  /**
+   * Document builders aren't thread-safe, so each thread gets its own.
+   */
+  private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS =
+      new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+          DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+          factory.setNamespaceAware(true);
+          try {
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            builder.setEntityResolver(NO_EXTERNAL_ENTITIES);
+            return builder;
+          } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      };
+
   /**
    * @deprecated Instead, please use
    *             {@link #getInputStream(Transformer, ManagedObject, boolean, boolean, String)}.
@@ -83,7 +151,7 @@ public class MOUtils {
     Element elem = mo.getElement();
     String str = DomUtils.serializeToString(transformer, elem, includeXMLDeclaration,
         includeDoctypeDeclaration, encoding);
-    return new ByteArrayInputStream(str.getBytes(encoding));
+    return new ByteArrayInputStream(EncodingUtils.toByteArray(str, encoding));
   }
 
   /**
@@ -241,7 +309,7 @@ public class MOUtils {
    */
   public ObjectSource getObjectSource(ExecutionContext context, String filename,
       InputStream content, String encoding) throws IOException {
-    return getObjectSource(context, filename, IOUtils.toByteArray(content), encoding);
+    return getObjectSource(context, filename, EncodingUtils.toByteArray(content), encoding);
   }
 
   /**
@@ -256,8 +324,8 @@ public class MOUtils {
    */
   public ObjectSource getObjectSource(ExecutionContext context, String filename, String content,
       String encoding) throws IOException {
-    return getObjectSource(context, filename,
-        IOUtils.toByteArray(new StringReader(content), encoding), encoding);
+    return getObjectSource(context, filename, EncodingUtils.toByteArray(content, encoding),
+        encoding);
   }
 
   /**
@@ -352,15 +420,38 @@ public class MOUtils {
    */
   public boolean isCheckedOut(ManagedObjectService moService, User user, String id,
       boolean includeSubMos) throws RSuiteException {
+    return isCheckedOut(moService, user, id, includeSubMos, new OperationContext());
+  }
+
+  /**
+   * Determine if an MO, and optionally, its sub-MOs, are checked out, stopping early if the
+   * operation context is cancelled or its deadline passes. Each sub-MO checked is a unit of work.
+   * 
+   * @param moService
+   * @param user
+   * @param id
+   * @param includeSubMos Submit true to check the MO's sub-MOs.
+   * @param opContext
+   * @return True if the MO is checked out. When checkSubMos is true, may also return true when a
+   *         sub MO is checked out.
+   * @throws RSuiteException
+   * @throws OperationCancelledException Thrown if the operation context is cancelled or its
+   *         deadline passes before the answer is known.
+   */
+  public boolean isCheckedOut(ManagedObjectService moService, User user, String id,
+      boolean includeSubMos, OperationContext opContext) throws RSuiteException {
     if (moService.isCheckedOut(user, id)) {
       return true;
     }
     if (includeSubMos) {
+      opContext.checkpoint("isCheckedOut");
       ManagedObject mo = moService.getManagedObject(user, id);
       if (mo.hasChildren()) {
         for (ManagedObject subMo : mo.listDescendantManagedObjects()) {
+          opContext.checkpoint("isCheckedOut");
           if (subMo.isCheckedout())
             return true;
+          opContext.completedUnit();
         }
       }
     }
@@ -382,17 +473,155 @@ public class MOUtils {
     ManagedObjectService moService = context.getManagedObjectService();
     if (!moService.isCheckedOut(user, id)) {
       moService.checkOut(user, id);
+      ManagedObjectDescriptors.invalidateEverywhere(id);
       return true;
     } else {
       if (moService.isCheckedOutButNotByUser(user, id)) {
+        CheckOutInfo checkOutInfo = moService.getCheckOutInfo(id);
+        if (checkOutInfo == null) {
+          // Released in the meantime.
+          moService.checkOut(user, id);
+          ManagedObjectDescriptors.invalidateEverywhere(id);
+          return true;
+        }
         throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
             MOUtilsMessageProperties.get("error.mo.checked.out.by.different.user",
-                moService.getCheckOutInfo(id).getUserId(), id));
+                checkOutInfo.getUserId(), id));
       }
       return false;
     }
   }
 
+  /**
+   * Check out the MO, waiting up to the specified amount of time for another user to release it.
+   * If already checked out to the specified user, no action is performed.
+   * <p>
+   * While waiting, the MO's status is checked with exponentially increasing, jittered intervals, at
+   * the cost of one round trip per check.
+   * Waiters of the same MO within this JVM are queued; when the MO is released via
+   * {@link #checkIn(ExecutionContext, User, String, ObjectCheckInOptions)} or
+   * {@link #undoCheckout(ExecutionContext, User, String)}, the longest waiting is woken
+   * immediately. Wait times are reported by {@link #getCheckoutWaitMetrics()}.
+   * 
+   * @param context
+   * @param user
+   * @param id
+   * @param timeoutMillis Maximum amount of time to wait for another user to release the MO. Submit
+   *        0 to behave as {@link #checkout(ExecutionContext, User, String)}.
+   * @return true if this method checked the MO out; false if the MO was already checked out to the
+   *         specified user.
+   * @throws RSuiteException Thrown if another user still has the MO checked out after the timeout,
+   *         or if the wait is interrupted.
+   */
+  public boolean checkout(ExecutionContext context, User user, String id, long timeoutMillis)
+      throws RSuiteException {
+    ManagedObjectService moService = context.getManagedObjectService();
+    long began = System.nanoTime();
+    long deadline = began + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    long pollMillis = CHECKOUT_POLL_INITIAL_MILLIS;
+    boolean waited = false;
+    // Queue before the first check, so a release made through this class after any check is not
+    // missed.
+    CheckoutWaitQueue.Waiter waiter = timeoutMillis > 0 ? CHECKOUT_WAIT_QUEUE.enqueue(id) : null;
+    try {
+      while (true) {
+        // While another user has the MO, each poll is a single round trip; only try to check it out
+        // once it looks free.
+        if (!moService.isCheckedOutButNotByUser(user, id)) {
+          try {
+            boolean checkedOut = checkout(context, user, id);
+            if (waited) {
+              CHECKOUT_WAIT_QUEUE.getMetrics().recordWait(System.nanoTime() - began, true);
+            }
+            return checkedOut;
+          } catch (RSuiteException e) {
+            // Only wait when another user got to it first.
+            if (!moService.isCheckedOutButNotByUser(user, id)) {
+              throw e;
+            }
+          }
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          CheckOutInfo checkOutInfo = moService.getCheckOutInfo(id);
+          if (checkOutInfo == null) {
+            // Released since the last poll.
+            continue;
+          }
+          if (!waited) {
+            throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+                MOUtilsMessageProperties.get("error.mo.checked.out.by.different.user",
+                    checkOutInfo.getUserId(), id));
+          }
+          CHECKOUT_WAIT_QUEUE.getMetrics().recordWait(System.nanoTime() - began, false);
+          throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+              MOUtilsMessageProperties.get("error.mo.checkout.wait.timed.out",
+                  checkOutInfo.getUserId(), id, timeoutMillis));
+        }
+        waited = true;
+        long jitteredMillis = pollMillis / 2
+            + (long) (ThreadLocalRandom.current().nextDouble() * pollMillis / 2);
+        try {
+          CHECKOUT_WAIT_QUEUE.await(waiter,
+              Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(jitteredMillis)));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          CHECKOUT_WAIT_QUEUE.getMetrics().recordInterruptedWait(System.nanoTime() - began);
+          throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+              MOUtilsMessageProperties.get("error.mo.checkout.wait.interrupted", id));
+        }
+        pollMillis = Math.min(pollMillis * 2, CHECKOUT_POLL_MAX_MILLIS);
+      }
+    } finally {
+      if (waiter != null) {
+        CHECKOUT_WAIT_QUEUE.dequeue(waiter);
+      }
+    }
+  }
+
+  /**
+   * Check in the MO, waking a thread waiting to check it out via
+   * {@link #checkout(ExecutionContext, User, String, long)}, if there is one.
+   * 
+   * @param context
+   * @param user
+   * @param id
+   * @param options
+   * @throws RSuiteException
+   */
+  public void checkIn(ExecutionContext context, User user, String id,
+      ObjectCheckInOptions options) throws RSuiteException {
+    context.getManagedObjectService().checkIn(user, id, options);
+    ManagedObjectDescriptors.invalidateEverywhere(id);
+    CHECKOUT_WAIT_QUEUE.signal(id);
+  }
+
+  /**
+   * Cancel the MO's check out, waking a thread waiting to check it out via
+   * {@link #checkout(ExecutionContext, User, String, long)}, if there is one.
+   * 
+   * @param context
+   * @param user
+   * @param id
+   * @throws RSuiteException
+   */
+  public void undoCheckout(ExecutionContext context, User user, String id)
+      throws RSuiteException {
+    context.getManagedObjectService().undoCheckout(user, id);
+    ManagedObjectDescriptors.invalidateEverywhere(id);
+    CHECKOUT_WAIT_QUEUE.signal(id);
+  }
+
+  /**
+   * Get the wait statistics of {@link #checkout(ExecutionContext, User, String, long)}. The
+   * statistics are shared by all MOUtils instances.
+   * 
+   * @return Checkout wait statistics.
+   */
+  public CheckoutWaitMetrics getCheckoutWaitMetrics() {
+    return CHECKOUT_WAIT_QUEUE.getMetrics();
+  }
+
   /**
    * Get the version specifier for the version of the MO that is immediately before the current
    * version.
@@ -451,12 +680,33 @@ public class MOUtils {
    */
   public void deleteMetadataEntries(User user, ManagedObjectService moService, String moid,
       String lmdName) throws RSuiteException {
+    deleteMetadataEntries(user, moService, moid, lmdName, new OperationContext());
+  }
+
+  /**
+   * Delete metadata from an MO by metadata name, stopping early if the operation context is
+   * cancelled or its deadline passes. Each metadata item deleted is a unit of work; items deleted
+   * before stopping remain deleted.
+   * 
+   * @param user
+   * @param moService
+   * @param moid
+   * @param lmdName
+   * @param opContext
+   * @throws RSuiteException
+   * @throws OperationCancelledException Thrown if the operation context is cancelled or its
+   *         deadline passes before all items are deleted.
+   */
+  public void deleteMetadataEntries(User user, ManagedObjectService moService, String moid,
+      String lmdName, OperationContext opContext) throws RSuiteException {
     if (StringUtils.isNotBlank(moid) && StringUtils.isNotBlank(lmdName)) {
       ManagedObject mo = moService.getManagedObject(user, moid);
       if (mo != null) {
         for (MetaDataItem mdItem : mo.getMetaDataItems()) {
           if (mdItem.getName().equals(lmdName)) {
+            opContext.checkpoint("deleteMetadataEntries");
             moService.removeMetaDataEntry(user, moid, mdItem);
+            opContext.completedUnit();
           }
         }
       }
@@ -544,41 +794,449 @@ public class MOUtils {
       URI xslUri, Map<String, Object> xslParams, boolean includeStandardRSuiteXslParams,
       String baseRSuiteUrl, String resultEncoding, String versionNote)
       throws RSuiteException, URISyntaxException, TransformerException, SAXException, IOException {
+    applyTransformAndUpdate(context, session, mo, xslUri, xslParams,
+        includeStandardRSuiteXslParams, baseRSuiteUrl, resultEncoding, versionNote,
+        new OperationContext());
+  }
+
+  /**
+   * Apply a transform to an MO and update the same MO with the tranform's result, stopping early if
+   * the operation context is cancelled or its deadline passes. The context is checked between the
+   * check out, transform, update and check in, each of which is a unit of work. When stopping
+   * early, a check out made by this method is undone, leaving the MO as it was.
+   * 
+   * @param context
+   * @param session A valid session that identifies the user to operate as.
+   * @param mo The managed object to check out (when not already checked out), apply the transform
+   *        to, update with the transform result, and check back in.
+   * @param xslUri URI of the XSL to apply.
+   * @param xslParams Optional parameters to pass into the XSL. Null may be sent in.
+   * @param includeStandardRSuiteXslParams Submit true to ensure XSLT parameters that RSuite
+   *        typically provides are included herein.
+   * @param baseRSuiteUrl Only used when includeStandardRSuiteXslParams is true.
+   * @param resultEncoding
+   * @param versionNote The new MO version's note.
+   * @param opContext
+   * @throws RSuiteException
+   * @throws OperationCancelledException Thrown if the operation context is cancelled or its
+   *         deadline passes before the MO is checked in.
+   * @throws URISyntaxException
+   * @throws TransformerException
+   * @throws SAXException
+   * @throws IOException
+   */
+  public void applyTransformAndUpdate(ExecutionContext context, Session session, ManagedObject mo,
+      URI xslUri, Map<String, Object> xslParams, boolean includeStandardRSuiteXslParams,
+      String baseRSuiteUrl, String resultEncoding, String versionNote, OperationContext opContext)
+      throws RSuiteException, URISyntaxException, TransformerException, SAXException, IOException {
     User user = session.getUser();
     ManagedObjectService moService = context.getManagedObjectService();
     boolean createdCheckOut = false;
     InputStream transformResult = null;
     try {
       // Make sure the user has the check out.
+      opContext.checkpoint("applyTransformAndUpdate");
       createdCheckOut = checkout(context, user, mo.getId());
+      opContext.completedUnit();
 
       // Perform transform
+      opContext.checkpoint("applyTransformAndUpdate");
       transformResult = new TransformUtils().iTransform(context, session, mo,
           context.getXmlApiManager().getTransformer(xslUri), xslParams,
           includeStandardRSuiteXslParams, baseRSuiteUrl);
+      opContext.completedUnit();
 
       // Update the MO
+      opContext.checkpoint("applyTransformAndUpdate");
       ObjectSource objectSource =
           getObjectSource(context, "file.xml", transformResult, resultEncoding);
       moService.update(user, mo.getId(), objectSource,
           getObjectUpdateOptions(objectSource, StringUtils.EMPTY, null));
+      opContext.completedUnit();
 
       // Check in the MO
+      opContext.checkpoint("applyTransformAndUpdate");
       ObjectCheckInOptions checkInOptions = new ObjectCheckInOptions();
       checkInOptions.setVersionType(VersionType.MINOR);
       checkInOptions.setVersionNote(versionNote);
-      moService.checkIn(user, mo.getId(), checkInOptions);
+      checkIn(context, user, mo.getId(), checkInOptions);
+      opContext.completedUnit();
     } finally {
       // If this method checked the MO out and it is still checked out,
       // cancel it.
       if (createdCheckOut && moService.isCheckedOutAuthor(user, mo.getId())) {
-        moService.undoCheckout(user, mo.getId());
+        undoCheckout(context, user, mo.getId());
       }
 
       IOUtils.closeQuietly(transformResult);
     }
   }
 
+  /**
+   * Apply a transform to each of an MO's leaf sub-MOs in parallel, update the sub-MOs the transform
+   * changed, then check in the MO once. Intended for large MOs split into many independent sub-MOs,
+   * where transforming the MO as a single unit would take too long. The sub-MOs are updated under
+   * the MO's check out, which extends to its sub-MOs; they are not checked out on their own.
+   * <p>
+   * The transform is applied to each leaf sub-MO (a sub-MO without sub-MOs of its own) on its own;
+   * it therefore needs to be able to process each independently. Content outside the leaf sub-MOs
+   * is not transformed. A sub-MO counts as changed when the parsed transform result differs from
+   * its current content; attribute order, namespace declarations and indentation are disregarded.
+   * Transforms are performed on the executor, but the updates are made in sequence on the calling
+   * thread once every transform has succeeded; if any transform fails, no sub-MO is updated. When
+   * the MO does not have sub-MOs, this is equivalent to
+   * {@link #applyTransformAndUpdate(ExecutionContext, Session, ManagedObject, URI, Map, boolean, String, String, String)}
+   * .
+   * 
+   * @param context
+   * @param session A valid session that identifies the user to operate as.
+   * @param mo The managed object to check out (when not already checked out), apply the transform
+   *        to the leaf sub-MOs of, update the changed sub-MOs of, and check back in.
+   * @param xslUri URI of the XSL to apply.
+   * @param xslParams Optional parameters to pass into the XSL. Null may be sent in. Shared by all
+   *        transforms, so should not be modified while this method runs.
+   * @param includeStandardRSuiteXslParams Submit true to ensure XSLT parameters that RSuite
+   *        typically provides are included herein.
+   * @param baseRSuiteUrl Only used when includeStandardRSuiteXslParams is true.
+   * @param resultEncoding
+   * @param versionNote The new MO version's note.
+   * @param executor The executor to perform the transforms on.
+   * @return The number of sub-MOs updated, or 1 when the MO does not have sub-MOs. When zero, the
+   *         MO is not checked in, so no new version is created.
+   * @throws RSuiteException
+   * @throws URISyntaxException
+   * @throws TransformerException
+   * @throws SAXException
+   * @throws IOException
+   */
+  public int applyTransformAndUpdate(final ExecutionContext context, final Session session,
+      ManagedObject mo, final URI xslUri, final Map<String, Object> xslParams,
+      final boolean includeStandardRSuiteXslParams, final String baseRSuiteUrl,
+      final String resultEncoding, String versionNote, ExecutorService executor)
+      throws RSuiteException, URISyntaxException, TransformerException, SAXException, IOException {
+    return applyTransformAndUpdate(context, session, mo, xslUri, xslParams,
+        includeStandardRSuiteXslParams, baseRSuiteUrl, resultEncoding, versionNote, executor,
+        new OperationContext());
+  }
+
+  /**
+   * Apply a transform to each of an MO's leaf sub-MOs in parallel, update the sub-MOs the transform
+   * changed, then check in the MO once, stopping early if the operation context is cancelled or its
+   * deadline passes. As in the single-MO variant, each check out, transform, update and check in
+   * is a unit of work. When stopping early, running transforms are interrupted, those yet to start
+   * are cancelled, and a check out made by this method is undone. Sub-MOs already updated are not
+   * reverted, but as the MO is not checked in, no new version is created.
+   * 
+   * @param context
+   * @param session A valid session that identifies the user to operate as.
+   * @param mo The managed object to check out (when not already checked out), apply the transform
+   *        to the leaf sub-MOs of, update the changed sub-MOs of, and check back in.
+   * @param xslUri URI of the XSL to apply.
+   * @param xslParams Optional parameters to pass into the XSL. Null may be sent in.
+   * @param includeStandardRSuiteXslParams Submit true to ensure XSLT parameters that RSuite
+   *        typically provides are included herein.
+   * @param baseRSuiteUrl Only used when includeStandardRSuiteXslParams is true.
+   * @param resultEncoding
+   * @param versionNote The new MO version's note.
+   * @param executor The executor to perform the transforms on.
+   * @param opContext
+   * @return The number of sub-MOs updated, or 1 when the MO does not have sub-MOs.
+   * @throws RSuiteException
+   * @throws OperationCancelledException Thrown if the operation context is cancelled or its
+   *         deadline passes before the MO is checked in.
+   * @throws URISyntaxException
+   * @throws TransformerException
+   * @throws SAXException
+   * @throws IOException
+   */
+  public int applyTransformAndUpdate(final ExecutionContext context, final Session session,
+      ManagedObject mo, final URI xslUri, final Map<String, Object> xslParams,
+      final boolean includeStandardRSuiteXslParams, final String baseRSuiteUrl,
+      final String resultEncoding, String versionNote, ExecutorService executor,
+      OperationContext opContext)
+      throws RSuiteException, URISyntaxException, TransformerException, SAXException, IOException {
+    if (!mo.hasChildren()) {
+      applyTransformAndUpdate(context, session, mo, xslUri, xslParams,
+          includeStandardRSuiteXslParams, baseRSuiteUrl, resultEncoding, versionNote, opContext);
+      return 1;
+    }
+
+    User user = session.getUser();
+    ManagedObjectService moService = context.getManagedObjectService();
+    boolean createdCheckOut = false;
+    List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+    try {
+      // Make sure the user has the check out.
+      opContext.checkpoint("applyTransformAndUpdate");
+      createdCheckOut = checkout(context, user, mo.getId());
+      opContext.completedUnit();
+
+      // Transform the leaf sub-MOs. A null result means the sub-MO was not changed.
+      List<ManagedObject> leafMos = new ArrayList<ManagedObject>();
+      for (ManagedObject subMo : mo.listDescendantManagedObjects()) {
+        if (!subMo.hasChildren()) {
+          leafMos.add(subMo);
+        }
+      }
+      for (final ManagedObject leafMo : leafMos) {
+        futures.add(executor.submit(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws Exception {
+            return transformIfChanged(context, session, leafMo, xslUri, xslParams,
+                includeStandardRSuiteXslParams, baseRSuiteUrl, resultEncoding);
+          }
+        }));
+      }
+
+      List<byte[]> results = new ArrayList<byte[]>(futures.size());
+      for (Future<byte[]> future : futures) {
+        results.add(getTransformResult(future, opContext));
+        opContext.completedUnit();
+      }
+
+      // Update the changed sub-MOs, under the MO's check out.
+      int updated = 0;
+      for (int i = 0; i < leafMos.size(); i++) {
+        if (results.get(i) != null) {
+          opContext.checkpoint("applyTransformAndUpdate");
+          ObjectSource objectSource =
+              getObjectSource(context, "file.xml", results.get(i), resultEncoding);
+          moService.update(user, leafMos.get(i).getId(), objectSource,
+              getObjectUpdateOptions(objectSource, StringUtils.EMPTY, null));
+          updated++;
+          opContext.completedUnit();
+        }
+      }
+
+      // Check in the MO once, when there's something new to check in.
+      if (updated > 0) {
+        opContext.checkpoint("applyTransformAndUpdate");
+        ObjectCheckInOptions checkInOptions = new ObjectCheckInOptions();
+        checkInOptions.setVersionType(VersionType.MINOR);
+        checkInOptions.setVersionNote(versionNote);
+        checkIn(context, user, mo.getId(), checkInOptions);
+        opContext.completedUnit();
+      }
+      return updated;
+    } finally {
+      // Only transforms abandoned by cancellation or another transform's failure are outstanding;
+      // interrupt them so they stop taking executor threads.
+      for (Future<byte[]> future : futures) {
+        future.cancel(true);
+      }
+
+      // Cancel the check out this method made when it is still outstanding.
+      if (createdCheckOut && moService.isCheckedOutAuthor(user, mo.getId())) {
+        undoCheckout(context, user, mo.getId());
+      }
+    }
+  }
+
+  /**
+   * Apply a transform to an MO, without updating it.
+   * 
+   * @return The transform result, or null when it is the same as the MO's current content.
+   */
+  private byte[] transformIfChanged(ExecutionContext context, Session session, ManagedObject mo,
+      URI xslUri, Map<String, Object> xslParams, boolean includeStandardRSuiteXslParams,
+      String baseRSuiteUrl, String resultEncoding)
+      throws RSuiteException, URISyntaxException, TransformerException, SAXException, IOException {
+    InputStream transformResult = null;
+    try {
+      // Transformers aren't thread-safe; get one per transform.
+      transformResult = new TransformUtils().iTransform(context, session, mo,
+          context.getXmlApiManager().getTransformer(xslUri), xslParams,
+          includeStandardRSuiteXslParams, baseRSuiteUrl);
+      byte[] result = EncodingUtils.toByteArray(transformResult);
+      return isSameContent(parse(result, resultEncoding), mo.getElement()) ? null : result;
+    } finally {
+      IOUtils.closeQuietly(transformResult);
+    }
+  }
+
+  /**
+   * Get the result of a transform performed by another thread, rethrowing whatever it threw. While
+   * waiting, the operation context is checked periodically.
+   */
+  private byte[] getTransformResult(Future<byte[]> future, OperationContext opContext)
+      throws RSuiteException, URISyntaxException, TransformerException, SAXException, IOException {
+    try {
+      while (true) {
+        opContext.checkpoint("applyTransformAndUpdate");
+        try {
+          return future.get(Math.min(opContext.getRemainingNanos(),
+              TimeUnit.MILLISECONDS.toNanos(TRANSFORM_WAIT_SLICE_MILLIS)), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+          // Check the operation context again.
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "Interrupted while waiting for a transform to complete.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RSuiteException) {
+        throw (RSuiteException) cause;
+      } else if (cause instanceof URISyntaxException) {
+        throw (URISyntaxException) cause;
+      } else if (cause instanceof TransformerException) {
+        throw (TransformerException) cause;
+      } else if (cause instanceof SAXException) {
+        throw (SAXException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "Unable to transform sub-MO: " + cause);
+    }
+  }
+
+  /**
+   * Parse XML with the calling thread's document builder. External entities are not resolved.
+   */
+  private Element parse(byte[] content, String encoding) throws SAXException, IOException {
+    InputSource source = new InputSource(new ByteArrayInputStream(content));
+    source.setEncoding(encoding);
+    DocumentBuilder builder = DOCUMENT_BUILDERS.get();
+    try {
+      return builder.parse(source).getDocumentElement();
+    } finally {
+      builder.reset();
+      builder.setEntityResolver(NO_EXTERNAL_ENTITIES);
+    }
+  }
+
+  /**
+   * Find out if two nodes have the same content. Differences serialization does not preserve are
+   * disregarded: attribute order, namespace declarations and prefixes, CDATA sections, and
+   * whitespace-only text between the children of elements that have element children.
+   */
+  private boolean isSameContent(Node a, Node b) {
+    if (a.getNodeType() != b.getNodeType()) {
+      return false;
+    }
+    switch (a.getNodeType()) {
+      case Node.ELEMENT_NODE:
+        return isSameName(a, b) && isSameAttributes((Element) a, (Element) b)
+            && isSameChildren(a, b);
+      case Node.PROCESSING_INSTRUCTION_NODE:
+        return a.getNodeName().equals(b.getNodeName())
+            && StringUtils.equals(a.getNodeValue(), b.getNodeValue());
+      default:
+        return StringUtils.equals(a.getNodeValue(), b.getNodeValue());
+    }
+  }
+
+  private boolean isSameName(Node a, Node b) {
+    if (a.getLocalName() == null || b.getLocalName() == null) {
+      return a.getNodeName().equals(b.getNodeName());
+    }
+    return a.getLocalName().equals(b.getLocalName())
+        && StringUtils.equals(a.getNamespaceURI(), b.getNamespaceURI());
+  }
+
+  private boolean isSameAttributes(Element a, Element b) {
+    List<Node> aAttrs = getAttributes(a);
+    List<Node> bAttrs = getAttributes(b);
+    if (aAttrs.size() != bAttrs.size()) {
+      return false;
+    }
+    for (Node aAttr : aAttrs) {
+      boolean found = false;
+      for (Node bAttr : bAttrs) {
+        if (isSameName(aAttr, bAttr)) {
+          found = aAttr.getNodeValue().equals(bAttr.getNodeValue());
+          break;
+        }
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The element's attributes, less namespace declarations.
+   */
+  private List<Node> getAttributes(Element elem) {
+    NamedNodeMap attrs = elem.getAttributes();
+    List<Node> list = new ArrayList<Node>(attrs.getLength());
+    for (int i = 0; i < attrs.getLength(); i++) {
+      Node attr = attrs.item(i);
+      if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())
+          && !XMLConstants.XMLNS_ATTRIBUTE.equals(attr.getNodeName())
+          && !attr.getNodeName().startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":")) {
+        list.add(attr);
+      }
+    }
+    return list;
+  }
+
+  private boolean isSameChildren(Node a, Node b) {
+    List<Object> aChildren = getChildren(a);
+    List<Object> bChildren = getChildren(b);
+    if (aChildren.size() != bChildren.size()) {
+      return false;
+    }
+    for (int i = 0; i < aChildren.size(); i++) {
+      Object aChild = aChildren.get(i);
+      Object bChild = bChildren.get(i);
+      if (aChild instanceof String || bChild instanceof String ? !aChild.equals(bChild)
+          : !isSameContent((Node) aChild, (Node) bChild)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The node's children, with each run of adjacent text and CDATA sections as a single
+   *         string, and whitespace-only runs dropped when the node has element children. Nodes are
+   *         not created, so the document is left untouched.
+   */
+  private List<Object> getChildren(Node parent) {
+    List<Object> children = new ArrayList<Object>();
+    StringBuilder text = null;
+    boolean hasElements = false;
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      short type = child.getNodeType();
+      if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+        if (text == null) {
+          text = new StringBuilder();
+        }
+        text.append(child.getNodeValue());
+        continue;
+      }
+      if (text != null) {
+        children.add(text.toString());
+        text = null;
+      }
+      hasElements |= type == Node.ELEMENT_NODE;
+      if (type == Node.ELEMENT_NODE || type == Node.COMMENT_NODE
+          || type == Node.PROCESSING_INSTRUCTION_NODE) {
+        children.add(child);
+      }
+    }
+    if (text != null) {
+      children.add(text.toString());
+    }
+    if (hasElements) {
+      for (Iterator<Object> it = children.iterator(); it.hasNext();) {
+        Object child = it.next();
+        if (child instanceof String && ((String) child).trim().isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+    return children;
+  }
+
   /**
    * Find out if the provided MO is a sub-MO.
    * 
@@ -655,18 +1313,40 @@ public class MOUtils {
    */
   public ManagedObject getSiblingSubMo(ManagedObjectService moService, User user, ManagedObject mo,
       boolean preceding) throws RSuiteException {
+    return getSiblingSubMo(moService, user, mo, preceding, new OperationContext());
+  }
+
+  /**
+   * Get one of the given sub-MO's siblings, stopping early if the operation context is cancelled
+   * or its deadline passes. Each sibling examined is a unit of work.
+   * 
+   * @param moService
+   * @param user
+   * @param mo Sub-MO to get a sibling of.
+   * @param preceding Submit true for the MO's preceding sub-MO or false for its following sub-MO.
+   * @param opContext
+   * @return A sibling sub-MO or, when one doesn't exist, null.
+   * @throws RSuiteException Thrown if the given MO is not a sub-MO.
+   * @throws OperationCancelledException Thrown if the operation context is cancelled or its
+   *         deadline passes before the sibling is found.
+   */
+  public ManagedObject getSiblingSubMo(ManagedObjectService moService, User user, ManagedObject mo,
+      boolean preceding, OperationContext opContext) throws RSuiteException {
     throwIfNotSubMo(moService, user, mo);
-    int increment = 20;
-    int start = 0;
-    int end = start + increment;
-    BrowseInfo browseInfo = moService.getChildManagedObjects(user,
-        moService.getRootManagedObjectId(user, mo.getId()), start, end);
-    List<ManagedObject> moList;
+    opContext.checkpoint("getSiblingSubMo");
+    ChildManagedObjectIterator children = new ChildManagedObjectIterator(moService, user,
+        moService.getRootManagedObjectId(user, mo.getId()));
     ManagedObject previousMo = null;
     boolean returnNext = false;
-    while (browseInfo.getTotal() > 0) {
-      moList = browseInfo.getManagedObjects();
-      for (ManagedObject candidateMo : moList) {
+    try {
+      while (true) {
+        // Check before hasNext(), which may request the next page of children.
+        opContext.checkpoint("getSiblingSubMo");
+        if (!children.hasNext()) {
+          break;
+        }
+        ManagedObject candidateMo = children.next();
+        opContext.completedUnit();
         if (returnNext) {
           return candidateMo;
         }
@@ -679,12 +1359,10 @@ public class MOUtils {
         }
         previousMo = candidateMo;
       }
-
-      // Get another batch.
-      start += increment;
-      end += increment;
-      browseInfo = moService.getChildManagedObjects(user,
-          moService.getRootManagedObjectId(user, mo.getId()), start, end);
+    } catch (BrowseException e) {
+      throw e.getCause();
+    } finally {
+      children.close();
     }
     return null;
   }
@@ -0,0 +1,87 @@
+package com.rsicms.rsuite.utils.mo;
+
+/**
+ * An immutable snapshot of the MO details listings and reports typically need, gathered in a
+ * single pass. See {@link ManagedObjectDescriptors}.
+ */
+public final class ManagedObjectDescriptor {
+
+  private final String id;
+  private final String displayName;
+  private final String qualifiedElementName;
+  private final boolean nonXml;
+  private final String rootId;
+  private final String checkOutUserId;
+
+  /**
+   * @param id
+   * @param displayName Display name, after failing over to the local name.
+   * @param qualifiedElementName Null for non-XML MOs.
+   * @param nonXml
+   * @param rootId ID of the MO's root MO. Same as the ID when not a sub-MO.
+   * @param checkOutUserId ID of the user the MO is checked out to, or null when not checked out.
+   */
+  public ManagedObjectDescriptor(String id, String displayName, String qualifiedElementName,
+      boolean nonXml, String rootId, String checkOutUserId) {
+    this.id = id;
+    this.displayName = displayName;
+    this.qualifiedElementName = qualifiedElementName;
+    this.nonXml = nonXml;
+    this.rootId = rootId;
+    this.checkOutUserId = checkOutUserId;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @return The MO's display name, or its local name when it doesn't have a display name.
+   */
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  /**
+   * @return The qualified element name, or null for non-XML MOs.
+   */
+  public String getQualifiedElementName() {
+    return qualifiedElementName;
+  }
+
+  public boolean isNonXml() {
+    return nonXml;
+  }
+
+  /**
+   * @return ID of the MO's root MO. Same as the MO's ID when not a sub-MO.
+   */
+  public String getRootId() {
+    return rootId;
+  }
+
+  /**
+   * @return True if a sub-MO.
+   */
+  public boolean isSubMo() {
+    return !id.equals(rootId);
+  }
+
+  /**
+   * @return ID of the user the MO is checked out to, or null when not checked out.
+   */
+  public String getCheckOutUserId() {
+    return checkOutUserId;
+  }
+
+  public boolean isCheckedOut() {
+    return checkOutUserId != null;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("'").append(displayName).append("' (ID: ").append(id).append(")")
+        .toString();
+  }
+
+}
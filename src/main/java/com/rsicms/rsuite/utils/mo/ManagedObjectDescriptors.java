@@ -0,0 +1,248 @@
+package com.rsicms.rsuite.utils.mo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.reallysi.rsuite.api.CheckOutInfo;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.service.ManagedObjectService;
+
+/**
+ * Retrieves {@link ManagedObjectDescriptor}s in bulk. Descriptors not already cached are gathered
+ * concurrently on the configured executor, then cached for a short time. Cache entries are per user,
+ * as the repository only returns MOs the user may see.
+ * <p>
+ * Check outs, check ins and undone check outs made through {@link MOUtils} in this JVM invalidate
+ * the MO's cached descriptors. Any other change, such as one made directly through the
+ * <code>ManagedObjectService</code> or on another server, is only seen once the cached descriptor
+ * expires.
+ */
+public class ManagedObjectDescriptors {
+
+  /**
+   * Number of cache entries above which expired entries are purged.
+   */
+  private static final int PURGE_THRESHOLD = 10000;
+
+  /**
+   * Every instance, so that MOUtils can invalidate their descriptors of an MO whose check out it
+   * changed. Weakly held, so instances may still be collected.
+   */
+  private static final Set<ManagedObjectDescriptors> INSTANCES =
+      Collections.newSetFromMap(new WeakHashMap<ManagedObjectDescriptors, Boolean>());
+
+  private static class CacheEntry {
+    private final ManagedObjectDescriptor descriptor;
+    private final long expiresAt;
+
+    private CacheEntry(ManagedObjectDescriptor descriptor, long expiresAt) {
+      this.descriptor = descriptor;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final MOUtils moUtils;
+  private final ExecutorService executor;
+  private final long ttlNanos;
+  // Cache entries by MO ID, then by user ID.
+  private final ConcurrentMap<String, ConcurrentMap<String, CacheEntry>> cache =
+      new ConcurrentHashMap<String, ConcurrentMap<String, CacheEntry>>();
+  // Incremented on every invalidation, so descriptors gathered meanwhile are not cached.
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * @param executor The executor to gather descriptors on.
+   * @param ttlMillis How long to cache descriptors for. Submit 0 to disable caching.
+   */
+  public ManagedObjectDescriptors(ExecutorService executor, long ttlMillis) {
+    this(new MOUtils(), executor, ttlMillis);
+  }
+
+  /**
+   * @param moUtils The MOUtils instance to use.
+   * @param executor The executor to gather descriptors on.
+   * @param ttlMillis How long to cache descriptors for. Submit 0 to disable caching.
+   */
+  public ManagedObjectDescriptors(MOUtils moUtils, ExecutorService executor, long ttlMillis) {
+    this.moUtils = moUtils;
+    this.executor = executor;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    synchronized (INSTANCES) {
+      INSTANCES.add(this);
+    }
+  }
+
+  /**
+   * Get descriptors of the identified MOs.
+   *
+   * @param moService
+   * @param user
+   * @param ids
+   * @return Descriptors in the same order as the given IDs. An entry is null when the user is
+   *         unable to retrieve the corresponding MO.
+   * @throws RSuiteException Thrown if unable to gather a descriptor.
+   */
+  public List<ManagedObjectDescriptor> getDescriptors(final ManagedObjectService moService,
+      final User user, List<String> ids) throws RSuiteException {
+    long now = System.nanoTime();
+    purgeIfLarge(now);
+    long invalidationsAtStart = invalidations.get();
+
+    List<ManagedObjectDescriptor> descriptors = new ArrayList<ManagedObjectDescriptor>(ids.size());
+    List<Future<ManagedObjectDescriptor>> futures =
+        new ArrayList<Future<ManagedObjectDescriptor>>(ids.size());
+    for (final String id : ids) {
+      Map<String, CacheEntry> entries = cache.get(id);
+      CacheEntry entry = entries == null ? null : entries.get(user.getUserId());
+      if (entry != null && entry.expiresAt - now > 0) {
+        descriptors.add(entry.descriptor);
+        futures.add(null);
+      } else {
+        descriptors.add(null);
+        futures.add(executor.submit(new Callable<ManagedObjectDescriptor>() {
+          @Override
+          public ManagedObjectDescriptor call() throws RSuiteException {
+            return getDescriptor(moService, user, id);
+          }
+        }));
+      }
+    }
+
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        if (futures.get(i) != null) {
+          ManagedObjectDescriptor descriptor = futures.get(i).get();
+          descriptors.set(i, descriptor);
+          if (descriptor != null && ttlNanos > 0
+              && invalidations.get() == invalidationsAtStart) {
+            getEntries(descriptor.getId()).put(user.getUserId(),
+                new CacheEntry(descriptor, System.nanoTime() + ttlNanos));
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "Interrupted while gathering MO descriptors.");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RSuiteException) {
+        throw (RSuiteException) e.getCause();
+      }
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "Unable to gather MO descriptors: " + e.getCause());
+    } finally {
+      for (Future<ManagedObjectDescriptor> future : futures) {
+        if (future != null) {
+          future.cancel(false);
+        }
+      }
+    }
+    return descriptors;
+  }
+
+  /**
+   * Get a descriptor of the identified MO, without consulting the cache.
+   *
+   * @param moService
+   * @param user
+   * @param id
+   * @return A descriptor of the MO, or null when the user is unable to retrieve the MO.
+   * @throws RSuiteException
+   */
+  public ManagedObjectDescriptor getDescriptor(ManagedObjectService moService, User user,
+      String id) throws RSuiteException {
+    ManagedObject mo = moService.getManagedObject(user, id);
+    if (mo == null) {
+      return null;
+    }
+    boolean nonXml = mo.isNonXml();
+    // Null when the MO is not checked out.
+    CheckOutInfo checkOutInfo = moService.getCheckOutInfo(id);
+    String checkOutUserId = checkOutInfo == null ? null : checkOutInfo.getUserId();
+    return new ManagedObjectDescriptor(id, moUtils.getDisplayNameQuietly(mo),
+        nonXml ? null : moUtils.getQualifiedElementName(mo), nonXml,
+        moService.getRootManagedObjectId(user, id), checkOutUserId);
+  }
+
+  /**
+   * Forget any cached descriptors of the identified MO.
+   *
+   * @param id
+   */
+  public void invalidate(String id) {
+    invalidations.incrementAndGet();
+    cache.remove(id);
+  }
+
+  /**
+   * Forget all cached descriptors.
+   */
+  public void invalidateAll() {
+    invalidations.incrementAndGet();
+    cache.clear();
+  }
+
+  /**
+   * Forget the cached descriptors of the identified MO held by every instance. Called by MOUtils
+   * when it changes the MO's check out.
+   *
+   * @param id
+   */
+  static void invalidateEverywhere(String id) {
+    List<ManagedObjectDescriptors> instances;
+    synchronized (INSTANCES) {
+      if (INSTANCES.isEmpty()) {
+        return;
+      }
+      instances = new ArrayList<ManagedObjectDescriptors>(INSTANCES);
+    }
+    for (ManagedObjectDescriptors instance : instances) {
+      instance.invalidate(id);
+    }
+  }
+
+  private ConcurrentMap<String, CacheEntry> getEntries(String id) {
+    ConcurrentMap<String, CacheEntry> entries = cache.get(id);
+    if (entries == null) {
+      ConcurrentMap<String, CacheEntry> created = new ConcurrentHashMap<String, CacheEntry>();
+      entries = cache.putIfAbsent(id, created);
+      if (entries == null) {
+        entries = created;
+      }
+    }
+    return entries;
+  }
+
+  private void purgeIfLarge(long now) {
+    if (cache.size() > PURGE_THRESHOLD) {
+      for (Iterator<ConcurrentMap<String, CacheEntry>> it = cache.values().iterator(); it
+          .hasNext();) {
+        Map<String, CacheEntry> entries = it.next();
+        for (Iterator<CacheEntry> entryIt = entries.values().iterator(); entryIt.hasNext();) {
+          if (entryIt.next().expiresAt - now <= 0) {
+            entryIt.remove();
+          }
+        }
+        if (entries.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+}
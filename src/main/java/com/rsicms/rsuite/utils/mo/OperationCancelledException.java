@@ -0,0 +1,38 @@
+package com.rsicms.rsuite.utils.mo;
+
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * Thrown when an operation stops early because its {@link OperationContext} was cancelled or its
+ * deadline passed.
+ */
+public class OperationCancelledException extends RSuiteException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long completedUnits;
+  private final boolean deadlineExceeded;
+
+  public OperationCancelledException(String message, long completedUnits,
+      boolean deadlineExceeded) {
+    super(RSuiteException.ERROR_INTERNAL_ERROR, message);
+    this.completedUnits = completedUnits;
+    this.deadlineExceeded = deadlineExceeded;
+  }
+
+  /**
+   * @return The number of units of work the operation completed before stopping. What a unit is
+   *         depends on the operation.
+   */
+  public long getCompletedUnits() {
+    return completedUnits;
+  }
+
+  /**
+   * @return True if the operation stopped because its deadline passed; false if it was cancelled.
+   */
+  public boolean isDeadlineExceeded() {
+    return deadlineExceeded;
+  }
+
+}
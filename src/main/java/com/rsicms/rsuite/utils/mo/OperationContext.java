@@ -0,0 +1,87 @@
+package com.rsicms.rsuite.utils.mo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A deadline and cancellation token for a long-running MOUtils operation, along with a count of
+ * the work the operation has completed. Operations accepting one check it between repository calls;
+ * once cancelled or past the deadline, they undo any check out they made and throw an
+ * {@link OperationCancelledException}.
+ * <p>
+ * Use a new instance per operation, as the completed work count is not reset.
+ */
+public class OperationContext {
+
+  private final long deadline;
+  private final boolean bounded;
+  private final CancellationToken token;
+  private final AtomicLong completedUnits = new AtomicLong();
+
+  /**
+   * Create a context without a deadline that may not be cancelled.
+   */
+  public OperationContext() {
+    this(0, null);
+  }
+
+  /**
+   * @param timeoutMillis Amount of time the operation may take. Submit 0 for no deadline.
+   * @param token Token that may be used to cancel the operation. May be null.
+   */
+  public OperationContext(long timeoutMillis, CancellationToken token) {
+    this.bounded = timeoutMillis > 0;
+    this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    this.token = token;
+  }
+
+  /**
+   * @return True if cancelled via the token or past the deadline.
+   */
+  public boolean isCancelled() {
+    return (token != null && token.isCancelled()) || getRemainingNanos() <= 0;
+  }
+
+  /**
+   * @return Nanoseconds left until the deadline; <code>Long.MAX_VALUE</code> when there isn't one.
+   */
+  public long getRemainingNanos() {
+    return bounded ? deadline - System.nanoTime() : Long.MAX_VALUE;
+  }
+
+  /**
+   * @return The number of units of work completed so far.
+   */
+  public long getCompletedUnits() {
+    return completedUnits.get();
+  }
+
+  /**
+   * Record the completion of a unit of work.
+   */
+  public void completedUnit() {
+    completedUnits.incrementAndGet();
+  }
+
+  /**
+   * Stop the operation if cancelled or past the deadline.
+   *
+   * @param operation Name of the operation, for the exception message.
+   * @throws OperationCancelledException Thrown if the operation is to stop.
+   */
+  public void checkpoint(String operation) throws OperationCancelledException {
+    if (token != null && token.isCancelled()) {
+      throw new OperationCancelledException(
+          MOUtilsMessageProperties.get("error.operation.cancelled", operation,
+              getCompletedUnits()),
+          getCompletedUnits(), false);
+    }
+    if (getRemainingNanos() <= 0) {
+      throw new OperationCancelledException(
+          MOUtilsMessageProperties.get("error.operation.deadline.exceeded", operation,
+              getCompletedUnits()),
+          getCompletedUnits(), true);
+    }
+  }
+
+}
@@ -0,0 +1,22 @@
+package com.rsicms.rsuite.utils.mo.browse;
+
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * Unchecked wrapper of an <code>RSuiteException</code> encountered while iterating through MOs.
+ * Needed because <code>Iterator</code> methods may not throw checked exceptions.
+ */
+public class BrowseException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public BrowseException(RSuiteException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  @Override
+  public RSuiteException getCause() {
+    return (RSuiteException) super.getCause();
+  }
+
+}
@@ -0,0 +1,244 @@
+package com.rsicms.rsuite.utils.mo.browse;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.browse.BrowseInfo;
+import com.reallysi.rsuite.service.ManagedObjectService;
+
+/**
+ * Lazily iterates through an MO's child MOs, one page of
+ * <code>ManagedObjectService#getChildManagedObjects()</code> at a time.
+ * <p>
+ * Page sizes adapt to observed latency: a page retrieved well within the target time doubles the
+ * size of the next page; a page that took longer than the target halves it. When given an
+ * executor, the next page is requested in the background while the caller works through the
+ * current one. Note that this means repository calls are made on the executor's threads.
+ * <p>
+ * Callers that may stop before reaching the end should {@link #close()} the iterator, which
+ * abandons any outstanding background request. <code>RSuiteException</code>s are wrapped in
+ * {@link BrowseException}.
+ */
+public class ChildManagedObjectIterator implements Iterator<ManagedObject>, Closeable {
+
+  /**
+   * Default size of the first page.
+   */
+  public static final int DEFAULT_INITIAL_PAGE_SIZE = 20;
+
+  /**
+   * Default maximum page size.
+   */
+  public static final int DEFAULT_MAX_PAGE_SIZE = 500;
+
+  /**
+   * Default amount of time a page request should take, in milliseconds.
+   */
+  public static final long DEFAULT_TARGET_PAGE_MILLIS = 250;
+
+  /**
+   * A retrieved page and whether there may be more after it.
+   */
+  private static class Page {
+    private final List<ManagedObject> mos;
+    private final boolean last;
+
+    private Page(List<ManagedObject> mos, boolean last) {
+      this.mos = mos;
+      this.last = last;
+    }
+  }
+
+  private final ManagedObjectService moService;
+  private final User user;
+  private final String parentId;
+  private final ExecutorService prefetchExecutor;
+  private final int minPageSize;
+  private final int maxPageSize;
+  private final long targetPageNanos;
+
+  private volatile int pageSize;
+  private int nextStart;
+  private Iterator<ManagedObject> current = Collections.<ManagedObject>emptyList().iterator();
+  private Future<Page> pending;
+  private boolean exhausted;
+
+  /**
+   * Iterate through the child MOs without background prefetching.
+   *
+   * @param moService
+   * @param user
+   * @param parentId The ID of the MO whose children are to be iterated through.
+   */
+  public ChildManagedObjectIterator(ManagedObjectService moService, User user, String parentId) {
+    this(moService, user, parentId, null);
+  }
+
+  /**
+   * Iterate through the child MOs using the default page sizing.
+   *
+   * @param moService
+   * @param user
+   * @param parentId The ID of the MO whose children are to be iterated through.
+   * @param prefetchExecutor Executor to request the next page on. May be null, in which case pages
+   *        are only requested when needed, on the caller's thread.
+   */
+  public ChildManagedObjectIterator(ManagedObjectService moService, User user, String parentId,
+      ExecutorService prefetchExecutor) {
+    this(moService, user, parentId, prefetchExecutor, DEFAULT_INITIAL_PAGE_SIZE,
+        DEFAULT_MAX_PAGE_SIZE, DEFAULT_TARGET_PAGE_MILLIS);
+  }
+
+  /**
+   * @param moService
+   * @param user
+   * @param parentId The ID of the MO whose children are to be iterated through.
+   * @param prefetchExecutor Executor to request the next page on. May be null, in which case pages
+   *        are only requested when needed, on the caller's thread.
+   * @param initialPageSize Size of the first page, which is also the smallest page size.
+   * @param maxPageSize Largest page size.
+   * @param targetPageMillis Amount of time a page request should take.
+   */
+  public ChildManagedObjectIterator(ManagedObjectService moService, User user, String parentId,
+      ExecutorService prefetchExecutor, int initialPageSize, int maxPageSize,
+      long targetPageMillis) {
+    if (initialPageSize < 1 || maxPageSize < initialPageSize) {
+      throw new IllegalArgumentException(
+          "Page sizes must be positive and the maximum no less than the initial.");
+    }
+    this.moService = moService;
+    this.user = user;
+    this.parentId = parentId;
+    this.prefetchExecutor = prefetchExecutor;
+    this.minPageSize = initialPageSize;
+    this.maxPageSize = maxPageSize;
+    this.targetPageNanos = TimeUnit.MILLISECONDS.toNanos(targetPageMillis);
+    this.pageSize = initialPageSize;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (exhausted) {
+        return false;
+      }
+      Page page = nextPage();
+      current = page.mos.iterator();
+      if (page.last) {
+        exhausted = true;
+      } else if (prefetchExecutor != null) {
+        pending = requestPage();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public ManagedObject next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Stop iterating, abandoning any outstanding background page request.
+   */
+  @Override
+  public void close() {
+    exhausted = true;
+    current = Collections.<ManagedObject>emptyList().iterator();
+    if (pending != null) {
+      pending.cancel(false);
+      pending = null;
+    }
+  }
+
+  /**
+   * Get the next page, either from the outstanding background request or by requesting it now.
+   *
+   * @return The next page.
+   */
+  private Page nextPage() {
+    if (pending == null) {
+      try {
+        return fetch(nextStart(), pageSize);
+      } catch (RSuiteException e) {
+        throw new BrowseException(e);
+      }
+    }
+    Future<Page> future = pending;
+    pending = null;
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BrowseException(new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "Interrupted while retrieving child MOs of MO " + parentId + "."));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RSuiteException) {
+        throw new BrowseException((RSuiteException) e.getCause());
+      }
+      throw new BrowseException(new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          "Unable to retrieve child MOs of MO " + parentId + ": " + e.getCause()));
+    }
+  }
+
+  private Future<Page> requestPage() {
+    final int start = nextStart();
+    final int size = pageSize;
+    return prefetchExecutor.submit(new Callable<Page>() {
+      @Override
+      public Page call() throws RSuiteException {
+        return fetch(start, size);
+      }
+    });
+  }
+
+  /**
+   * Reserve the range of the next page.
+   *
+   * @return The start of the next page.
+   */
+  private int nextStart() {
+    int start = nextStart;
+    nextStart += pageSize;
+    return start;
+  }
+
+  private Page fetch(int start, int size) throws RSuiteException {
+    long began = System.nanoTime();
+    BrowseInfo browseInfo = moService.getChildManagedObjects(user, parentId, start, start + size);
+    adjustPageSize(System.nanoTime() - began);
+    List<ManagedObject> mos = browseInfo.getTotal() > 0 ? browseInfo.getManagedObjects() : null;
+    if (mos == null) {
+      mos = Collections.emptyList();
+    }
+    return new Page(mos, mos.size() < size);
+  }
+
+  private void adjustPageSize(long elapsedNanos) {
+    if (elapsedNanos > targetPageNanos) {
+      pageSize = Math.max(minPageSize, pageSize / 2);
+    } else if (elapsedNanos < targetPageNanos / 2) {
+      pageSize = Math.min(maxPageSize, pageSize * 2);
+    }
+  }
+
+}
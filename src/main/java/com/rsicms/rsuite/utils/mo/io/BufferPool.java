@@ -0,0 +1,49 @@
+package com.rsicms.rsuite.utils.mo.io;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of fixed-size byte arrays, shared by all threads. When the pool is empty, a new
+ * array is allocated; when full, returned arrays are left for the garbage collector.
+ */
+public class BufferPool {
+
+  private final int bufferSize;
+  private final BlockingQueue<byte[]> buffers;
+
+  /**
+   * @param bufferSize Size of each buffer, in bytes.
+   * @param capacity Maximum number of idle buffers to retain.
+   */
+  public BufferPool(int bufferSize, int capacity) {
+    this.bufferSize = bufferSize;
+    this.buffers = new ArrayBlockingQueue<byte[]>(capacity);
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Borrow a buffer. Its content is undefined.
+   *
+   * @return A buffer of {@link #getBufferSize()} bytes.
+   */
+  public byte[] borrow() {
+    byte[] buffer = buffers.poll();
+    return buffer == null ? new byte[bufferSize] : buffer;
+  }
+
+  /**
+   * Return a buffer obtained from {@link #borrow()}. The caller must not use it afterwards.
+   *
+   * @param buffer
+   */
+  public void release(byte[] buffer) {
+    if (buffer != null && buffer.length == bufferSize) {
+      buffers.offer(buffer);
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+package com.rsicms.rsuite.utils.mo.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Allocation-light conversions of strings and streams to byte arrays. Intermediate bytes are
+ * written to buffers borrowed from a shared {@link BufferPool}; the only array allocated per call
+ * is the exactly-sized result.
+ */
+public class EncodingUtils {
+
+  /**
+   * Size of each pooled buffer, in bytes.
+   */
+  public static final int BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * Maximum number of idle buffers retained by the pool.
+   */
+  public static final int POOL_CAPACITY = 128;
+
+  private static final BufferPool POOL = new BufferPool(BUFFER_SIZE, POOL_CAPACITY);
+
+  /**
+   * Encoders are stateful, so each thread gets its own, by encoding name. The platform's default
+   * encoding is keyed by null.
+   */
+  private static final ThreadLocal<Map<String, CharsetEncoder>> ENCODERS =
+      new ThreadLocal<Map<String, CharsetEncoder>>() {
+        @Override
+        protected Map<String, CharsetEncoder> initialValue() {
+          return new HashMap<String, CharsetEncoder>();
+        }
+      };
+
+  /**
+   * Pooled buffers holding the bytes of a single conversion.
+   */
+  private static class Chunks {
+    private byte[][] buffers = new byte[4][];
+    private int[] lengths = new int[4];
+    private int count;
+    private int total;
+
+    /**
+     * @return A pooled buffer to write the next bytes to.
+     */
+    private byte[] next() {
+      if (count == buffers.length) {
+        buffers = Arrays.copyOf(buffers, count * 2);
+        lengths = Arrays.copyOf(lengths, count * 2);
+      }
+      buffers[count] = POOL.borrow();
+      return buffers[count++];
+    }
+
+    /**
+     * Record how many bytes were written to the latest buffer.
+     *
+     * @param length
+     */
+    private void complete(int length) {
+      lengths[count - 1] = length;
+      total += length;
+    }
+
+    private byte[] toByteArray() {
+      if (count == 1) {
+        return Arrays.copyOf(buffers[0], total);
+      }
+      byte[] result = new byte[total];
+      int offset = 0;
+      for (int i = 0; i < count; i++) {
+        System.arraycopy(buffers[i], 0, result, offset, lengths[i]);
+        offset += lengths[i];
+      }
+      return result;
+    }
+
+    private void release() {
+      for (int i = 0; i < count; i++) {
+        POOL.release(buffers[i]);
+        buffers[i] = null;
+      }
+      count = 0;
+    }
+  }
+
+  /**
+   * Encode a string. Malformed and unmappable characters are replaced, as
+   * <code>String#getBytes(String)</code> does.
+   *
+   * @param content
+   * @param encoding Null for the platform's default encoding, as
+   *        <code>IOUtils#toByteArray(Reader, String)</code> allows.
+   * @return The encoded string, in an array of exactly the encoded length.
+   * @throws UnsupportedEncodingException Thrown if the encoding is not supported.
+   */
+  public static byte[] toByteArray(String content, String encoding)
+      throws UnsupportedEncodingException {
+    CharsetEncoder encoder = getEncoder(encoding);
+    CharBuffer in = CharBuffer.wrap(content);
+    Chunks chunks = new Chunks();
+    try {
+      ByteBuffer out = ByteBuffer.wrap(chunks.next());
+      boolean flushing = false;
+      while (true) {
+        CoderResult result = flushing ? encoder.flush(out) : encoder.encode(in, out, true);
+        if (result.isOverflow()) {
+          chunks.complete(out.position());
+          out = ByteBuffer.wrap(chunks.next());
+        } else if (result.isUnderflow()) {
+          if (flushing) {
+            break;
+          }
+          flushing = true;
+        } else {
+          // Unreachable given the REPLACE actions.
+          result.throwException();
+        }
+      }
+      chunks.complete(out.position());
+      return chunks.toByteArray();
+    } catch (CharacterCodingException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      chunks.release();
+      encoder.reset();
+    }
+  }
+
+  /**
+   * Read the remainder of a stream. The stream is not closed.
+   *
+   * @param is
+   * @return The bytes read, in an array of exactly the number of bytes read.
+   * @throws IOException Thrown if unable to read from the stream.
+   */
+  public static byte[] toByteArray(InputStream is) throws IOException {
+    Chunks chunks = new Chunks();
+    try {
+      byte[] buffer = chunks.next();
+      int position = 0;
+      int read;
+      while ((read = is.read(buffer, position, buffer.length - position)) != -1) {
+        position += read;
+        if (position == buffer.length) {
+          chunks.complete(position);
+          buffer = chunks.next();
+          position = 0;
+        }
+      }
+      chunks.complete(position);
+      return chunks.toByteArray();
+    } finally {
+      chunks.release();
+    }
+  }
+
+  private static CharsetEncoder getEncoder(String encoding) throws UnsupportedEncodingException {
+    Map<String, CharsetEncoder> encoders = ENCODERS.get();
+    CharsetEncoder encoder = encoders.get(encoding);
+    if (encoder == null) {
+      try {
+        Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+        encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      } catch (IllegalCharsetNameException e) {
+        throw new UnsupportedEncodingException(encoding);
+      } catch (UnsupportedCharsetException e) {
+        throw new UnsupportedEncodingException(encoding);
+      }
+      encoders.put(encoding, encoder);
+    }
+    return encoder;
+  }
+
+}